@@ -1,13 +1,15 @@
 package display;
 
+/**
+ * A button is a rectangle of the canvas which acts when clicked. It is
+ * registered with the button dispatcher while it exists, which calls it
+ * from the mouse listener of StdDraw when a press falls inside it.
+ */
 public abstract class Button {
 
-	private 		double			t = 0;
 	private final	Vector2<Double> pos;
 	private final 	Vector2<Double> dim;
 	private 		boolean			draw;
-	private 		boolean 		running = true;
-	private final 	Thread			thread;
 	
 	public Button(Vector2<Double> pos, Vector2<Double> dim) { this(pos, dim, false); }
 
@@ -15,39 +17,23 @@ public abstract class Button {
 		this.pos = pos;
 		this.dim = dim;
 		this.draw = draw;
-		thread = new Thread(
-				()
-				->
-				{
-					while (running) {
-						if (StdDraw.isMousePressed())
-							if (
-								StdDraw.mouseX() < pos.getX()+dim.getX() && StdDraw.mouseX() > pos.getX()-dim.getX() &&
-								StdDraw.mouseY() < pos.getY()+dim.getY()&& StdDraw.mouseY() > pos.getY()-dim.getY() &&
-								t < System.currentTimeMillis()-300)
-							{
-								t = System.currentTimeMillis();
-								try {
-									if(StdDraw.isLeftClick())
-										onLeftClick();
-									if(StdDraw.isRightClick())
-										onRightClick();
-									if(StdDraw.isMiddleClick())
-										onMiddleClick();
-								} catch (Exception e) {
-									e.printStackTrace();
-								}
-								
-							}
-					}
-				}
-				);
-		thread.start();
+		ButtonDispatcher.register(this);
 	}
 	
 	protected abstract void onLeftClick();
 	protected abstract void onRightClick();
 	protected abstract void onMiddleClick();
+
+	/**
+	 * Checks whether a position is inside the button.
+	 * @param x the X position, in user coordinates
+	 * @param y the Y position, in user coordinates
+	 * @return whether the position is inside
+	 */
+	boolean contains(double x, double y) {
+		return x < pos.getX()+dim.getX() && x > pos.getX()-dim.getX() &&
+				y < pos.getY()+dim.getY() && y > pos.getY()-dim.getY();
+	}
 	
 	public void draw() {
 		if (draw)
@@ -62,13 +48,11 @@ public abstract class Button {
 		return dim;
 	}
 	
+	/**
+	 * Unregisters the button, it is no longer clicked.
+	 * @return whether the button was registered
+	 */
 	public boolean destroy() {
-		running = false;
-		try {
-			thread.join();
-		} catch (InterruptedException e) {
-			return false;
-		}
-		return true;
+		return ButtonDispatcher.unregister(this);
 	}
 }
@@ -0,0 +1,52 @@
+package display;
+
+import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The button dispatcher hands the mouse presses of the StdDraw window to
+ * the buttons under the mouse. The buttons register themselves when
+ * created and unregister when destroyed, and StdDraw calls the dispatcher
+ * from its mouse listener, so nothing runs while nobody clicks.
+ *
+ * The buttons are kept in a copy on write list: they are rarely added or
+ * removed, while a press goes through all of them from the event thread.
+ */
+final class ButtonDispatcher {
+
+	private static final List<Button> buttons = new CopyOnWriteArrayList<Button>();
+
+	private ButtonDispatcher() {}
+
+	static void register(Button b) {
+		buttons.add(b);
+	}
+
+	static boolean unregister(Button b) {
+		return buttons.remove(b);
+	}
+
+	/**
+	 * Clicks every button containing the position of a mouse press.
+	 * @param x the X position of the press, in user coordinates
+	 * @param y the Y position of the press, in user coordinates
+	 * @param mouseButton the button pressed, one of the MouseEvent.BUTTON constants
+	 */
+	static void press(double x, double y, int mouseButton) {
+		for (Button b : buttons) {
+			if (!b.contains(x, y))
+				continue;
+			try {
+				if (mouseButton == MouseEvent.BUTTON1)
+					b.onLeftClick();
+				else if (mouseButton == MouseEvent.BUTTON3)
+					b.onRightClick();
+				else if (mouseButton == MouseEvent.BUTTON2)
+					b.onMiddleClick();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,753 @@
+package display;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A command buffer records the drawing of a frame instead of drawing it
+ * right away, and draws it in one pass when the frame is shown.
+ *
+ * A command is a few primitives in parallel arrays, already in screen
+ * coordinates, so recording a frame does not allocate any shape. The pen
+ * color, radius and font are indices in palettes filled again for each
+ * frame, and the state of a command is an index in the combinations of
+ * them used by the frame. A buffer never needs to draw while recording, so
+ * it can be recorded by a thread and drawn by another one.
+ *
+ * When flushed, the commands are sorted by state so that the color and the
+ * stroke only change a few times per frame. A command is never moved before
+ * an earlier one it overlaps with another state: each command gets a level,
+ * one more than the level of the overlapping commands drawn with another
+ * state, and the commands are sorted by level first. The overlaps are found
+ * on a coarse grid of the canvas, which can only add levels, never miss one.
+ * Every bounding box is widened by a pixel for the antialiased edges.
+ *
+ * The same grid tells which parts of the canvas a frame changes: each cell
+ * gets a hash of the commands overlapping it, in order. A frame starting by
+ * clearing the canvas only differs from the frame drawn before in the cells
+ * whose hash changed, and only these cells need to be drawn again.
+ */
+final class CommandBuffer {
+
+	// Operations
+	static final int LINE			= 0;
+	static final int DRAW_RECT		= 1;
+	static final int FILL_RECT		= 2;
+	static final int DRAW_ELLIPSE	= 3;
+	static final int FILL_ELLIPSE	= 4;
+	static final int ARC			= 5;
+	static final int PIXEL			= 6;
+	static final int DRAW_POLY		= 7;
+	static final int FILL_POLY		= 8;
+	static final int TEXT			= 9;
+	static final int IMAGE			= 10;
+
+	// Alignments of a text
+	static final int CENTER	= 0;
+	static final int LEFT	= 1;
+	static final int RIGHT	= 2;
+
+	private static final int GRID		= 32;		// The amount of cells on each side of the grid
+	private static final int NONE		= -1;		// The index of a part of the state a command does not use
+	private static final int MAX_SIZE	= 1 << 19;	// The amount of commands after which the frame is not sorted
+
+	static final int CELLS = GRID * GRID;			// The amount of cells of the grid
+
+	private final int			width;		// The width of the canvas
+	private final int			height;		// The height of the canvas
+	private final double		cellWidth;	// The width of a cell of the grid
+	private final double		cellHeight;	// The height of a cell of the grid
+
+	// The commands
+	private int			size;
+	private byte[]		op;
+	private int[]		state;
+	private int[]		level;
+	private double[]	coords;		// Six coordinates per command
+	private double[]	bounds;		// The bounding box of each command, four coordinates per command
+	private Object[]	objects;	// The string of the TEXT commands, the image of the IMAGE commands
+	private double[]	points;		// The points of the polygons
+	private int			pointCount;
+	private long[]		keys;		// The sort keys, reused between flushes
+	private double		minX, minY, maxX, maxY;	// The bounds of the commands
+	private boolean		cleared;	// Whether the frame starts by clearing the whole canvas
+
+	// The palettes, filled again for each frame
+	private Color[]			colors = new Color[16];
+	private double[]		radii = new double[16];
+	private BasicStroke[]	strokes = new BasicStroke[16];
+	private Font[]			fonts = new Font[16];
+	private int				colorCount, strokeCount, fontCount;
+
+	// The states, a color, a stroke and a font of the palettes
+	private int[]	stateColor = new int[16];
+	private int[]	stateStroke = new int[16];
+	private int[]	stateFont = new int[16];
+	private int		stateCount;
+
+	// The current state, its indices are looked up on first use
+	private Color	color;
+	private double	radius;
+	private float	scaledRadius;
+	private Font	font;
+	private int		colorIndex = NONE, strokeIndex = NONE, fontIndex = NONE;
+	private int		fillState = NONE, strokeState = NONE, textState = NONE;
+
+	// The highest level in each cell of the grid and its state, -1 if several
+	private final int[]	cellLevel = new int[GRID * GRID];
+	private final int[]	cellState = new int[GRID * GRID];
+
+	// The hash of the commands overlapping each cell of the grid
+	private final long[] cellHash = new long[CELLS];
+
+	// The shapes drawn, reused for every command
+	private final Line2D.Double			line = new Line2D.Double();
+	private final Rectangle2D.Double	rect = new Rectangle2D.Double();
+	private final Ellipse2D.Double		ellipse = new Ellipse2D.Double();
+	private final Arc2D.Double			arc = new Arc2D.Double();
+	private final Path2D.Double			path = new Path2D.Double();
+
+	private final TextCache				texts = new TextCache();	// The strings of the TEXT commands laid out
+
+	/**
+	 * Creates an empty buffer for a canvas. The buffer does not hold the
+	 * graphics it is drawn on, so a frame can be recorded by a thread and
+	 * drawn by another one.
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 */
+	CommandBuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		cellWidth = (double) width / GRID;
+		cellHeight = (double) height / GRID;
+		int capacity = 256;
+		op = new byte[capacity];
+		state = new int[capacity];
+		level = new int[capacity];
+		coords = new double[6 * capacity];
+		bounds = new double[4 * capacity];
+		objects = new Object[capacity];
+		keys = new long[capacity];
+		points = new double[64];
+		reset();
+	}
+
+	// State
+
+	/**
+	 * Sets the color of the next commands.
+	 * @param c the color
+	 */
+	void setColor(Color c) {
+		if (c.equals(color))
+			return;
+		color = c;
+		colorIndex = fillState = strokeState = textState = NONE;
+	}
+
+	/**
+	 * Sets the pen radius of the next commands.
+	 * @param r the radius, as given to StdDraw.setPenRadius
+	 * @param scaled the width of the stroke on the canvas
+	 */
+	void setStroke(double r, float scaled) {
+		if (r == radius && scaled == scaledRadius)
+			return;
+		radius = r;
+		scaledRadius = scaled;
+		strokeIndex = strokeState = NONE;
+	}
+
+	/**
+	 * Sets the font of the next commands.
+	 * @param f the font
+	 */
+	void setFont(Font f) {
+		if (f.equals(font))
+			return;
+		font = f;
+		fontIndex = textState = NONE;
+	}
+
+	/**
+	 * Gives the stroke of the current pen radius.
+	 * @return the stroke
+	 */
+	BasicStroke getStroke() {
+		return strokes[strokeIndex()];
+	}
+
+	/**
+	 * Gives the index of the current color in the palette, adding it if needed.
+	 * @return the index
+	 */
+	private int colorIndex() {
+		if (colorIndex == NONE) {
+			for (int i = 0; i < colorCount && colorIndex == NONE; i++)
+				if (colors[i].equals(color))
+					colorIndex = i;
+			if (colorIndex == NONE) {
+				if (colorCount == colors.length)
+					colors = Arrays.copyOf(colors, 2 * colorCount);
+				colors[colorCount] = color;
+				colorIndex = colorCount++;
+			}
+		}
+		return colorIndex;
+	}
+
+	/**
+	 * Gives the index of the current stroke in the palette, adding it if needed.
+	 * @return the index
+	 */
+	private int strokeIndex() {
+		if (strokeIndex == NONE) {
+			for (int i = 0; i < strokeCount && strokeIndex == NONE; i++)
+				if (radii[i] == radius && strokes[i].getLineWidth() == scaledRadius)
+					strokeIndex = i;
+			if (strokeIndex == NONE) {
+				if (strokeCount == strokes.length) {
+					radii = Arrays.copyOf(radii, 2 * strokeCount);
+					strokes = Arrays.copyOf(strokes, 2 * strokeCount);
+				}
+				radii[strokeCount] = radius;
+				strokes[strokeCount] = new BasicStroke(scaledRadius, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+				strokeIndex = strokeCount++;
+			}
+		}
+		return strokeIndex;
+	}
+
+	/**
+	 * Gives the index of the current font in the palette, adding it if needed.
+	 * @return the index
+	 */
+	private int fontIndex() {
+		if (fontIndex == NONE) {
+			for (int i = 0; i < fontCount && fontIndex == NONE; i++)
+				if (fonts[i].equals(font))
+					fontIndex = i;
+			if (fontIndex == NONE) {
+				if (fontCount == fonts.length)
+					fonts = Arrays.copyOf(fonts, 2 * fontCount);
+				fonts[fontCount] = font;
+				fontIndex = fontCount++;
+			}
+		}
+		return fontIndex;
+	}
+
+	// Commands
+
+	void line(double x0, double y0, double x1, double y1) {
+		double w = 1 + getStroke().getLineWidth();
+		add(LINE, stateOf(true, false), x0, y0, x1, y1, 0, 0, null,
+				Math.min(x0, x1) - w, Math.min(y0, y1) - w, Math.max(x0, x1) + w, Math.max(y0, y1) + w);
+	}
+
+	void rectangle(boolean fill, double x, double y, double w, double h) {
+		double m = 1 + (fill ? 0 : getStroke().getLineWidth());
+		add(fill ? FILL_RECT : DRAW_RECT, stateOf(!fill, false), x, y, w, h, 0, 0, null, x - m, y - m, x + w + m, y + h + m);
+	}
+
+	void ellipse(boolean fill, double x, double y, double w, double h) {
+		double m = 1 + (fill ? 0 : getStroke().getLineWidth());
+		add(fill ? FILL_ELLIPSE : DRAW_ELLIPSE, stateOf(!fill, false), x, y, w, h, 0, 0, null, x - m, y - m, x + w + m, y + h + m);
+	}
+
+	void arc(double x, double y, double w, double h, double start, double extent) {
+		double m = 1 + getStroke().getLineWidth();
+		add(ARC, stateOf(true, false), x, y, w, h, start, extent, null, x - m, y - m, x + w + m, y + h + m);
+	}
+
+	void pixel(int x, int y) {
+		add(PIXEL, stateOf(false, false), x, y, 0, 0, 0, 0, null, x, y, x + 1, y + 1);
+	}
+
+	void polygon(boolean fill, double[] xs, double[] ys, int n) {
+		if (pointCount + 2 * n > points.length)
+			points = Arrays.copyOf(points, Math.max(points.length * 2, pointCount + 2 * n));
+		int start = pointCount;
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			points[pointCount++] = xs[i];
+			points[pointCount++] = ys[i];
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		double m = 1 + (fill ? 0 : getStroke().getLineWidth());
+		add(fill ? FILL_POLY : DRAW_POLY, stateOf(!fill, false), start, n, 0, 0, 0, 0, null, minX - m, minY - m, maxX + m, maxY + m);
+	}
+
+	/**
+	 * Records a text, rotated around its position by the given degrees.
+	 * Its width is only known when drawn, so it is taken as overlapping
+	 * the whole width of the canvas, or the whole canvas when rotated.
+	 */
+	void text(double x, double y, String s, int align, double degrees) {
+		double h = 2 * font.getSize2D();
+		if (degrees == 0)
+			add(TEXT, stateOf(false, true), x, y, align, 0, 0, 0, s,
+					0, y - h, width, y + h);
+		else
+			add(TEXT, stateOf(false, true), x, y, align, degrees, 0, 0, s,
+					0, 0, width, height);
+	}
+
+	/**
+	 * Records an image centered on (x, y), rotated around its center by the
+	 * given degrees. An image which is not scaled is drawn with its own size.
+	 */
+	void image(Image image, double x, double y, double w, double h, boolean scaled, double degrees) {
+		double r = degrees == 0 ? 0 : Math.hypot(w, h) / 2;
+		double rx = degrees == 0 ? w / 2 : r, ry = degrees == 0 ? h / 2 : r;
+		add(IMAGE, stateOf(false, false), x, y, w, h, degrees, scaled ? 1 : 0, image,
+				x - rx - 1, y - ry - 1, x + rx + 1, y + ry + 1);
+	}
+
+	/**
+	 * Discards the commands recorded, they would be hidden, and fills the
+	 * canvas with the given color.
+	 * @param c the color
+	 * @param width the width of the canvas
+	 * @param height the height of the canvas
+	 */
+	void clear(Color c, double width, double height) {
+		reset();
+		Color pen = color;
+		setColor(c);
+		rectangle(true, 0, 0, width, height);
+		if (pen != null)
+			setColor(pen);
+		cleared = width >= this.width && height >= this.height;
+	}
+
+	/**
+	 * Gives the state of a command, adding it to the states if needed.
+	 * @param stroked whether the command uses the stroke
+	 * @param texted whether the command uses the font
+	 * @return the state
+	 */
+	private int stateOf(boolean stroked, boolean texted) {
+		if (stroked) {
+			if (strokeState == NONE)
+				strokeState = findState(colorIndex(), strokeIndex(), NONE);
+			return strokeState;
+		}
+		if (texted) {
+			if (textState == NONE)
+				textState = findState(colorIndex(), NONE, fontIndex());
+			return textState;
+		}
+		if (fillState == NONE)
+			fillState = findState(colorIndex(), NONE, NONE);
+		return fillState;
+	}
+
+	private int findState(int c, int st, int f) {
+		for (int i = 0; i < stateCount; i++)
+			if (stateColor[i] == c && stateStroke[i] == st && stateFont[i] == f)
+				return i;
+		if (stateCount == stateColor.length) {
+			stateColor = Arrays.copyOf(stateColor, 2 * stateCount);
+			stateStroke = Arrays.copyOf(stateStroke, 2 * stateCount);
+			stateFont = Arrays.copyOf(stateFont, 2 * stateCount);
+		}
+		stateColor[stateCount] = c;
+		stateStroke[stateCount] = st;
+		stateFont[stateCount] = f;
+		return stateCount++;
+	}
+
+	/**
+	 * Adds a command, giving it the lowest level which keeps it above the
+	 * earlier commands it overlaps with another state.
+	 */
+	private void add(int operation, int s, double a, double b, double c, double d, double e, double f, Object o,
+			double minX, double minY, double maxX, double maxY) {
+		if (size == op.length)
+			grow();
+		this.minX = Math.min(this.minX, minX);
+		this.minY = Math.min(this.minY, minY);
+		this.maxX = Math.max(this.maxX, maxX);
+		this.maxY = Math.max(this.maxY, maxY);
+		int l = 0;
+		int c0 = cellX(minX), c1 = cellX(maxX);
+		int r0 = cellY(minY), r1 = cellY(maxY);
+		if (size < MAX_SIZE) {
+			for (int r = r0; r <= r1; r++)
+				for (int col = c0; col <= c1; col++) {
+					int cell = r * GRID + col;
+					if (cellLevel[cell] == -1)
+						continue;
+					l = Math.max(l, cellLevel[cell] + (cellState[cell] == s ? 0 : 1));
+				}
+			for (int r = r0; r <= r1; r++)
+				for (int col = c0; col <= c1; col++) {
+					int cell = r * GRID + col;
+					if (l > cellLevel[cell]) {
+						cellLevel[cell] = l;
+						cellState[cell] = s;
+					} else if (l == cellLevel[cell] && cellState[cell] != s)
+						cellState[cell] = -1;
+				}
+		}
+
+		int i = size++;
+		op[i] = (byte) operation;
+		state[i] = s;
+		level[i] = l;
+		int k = 6 * i;
+		coords[k] = a;
+		coords[k+1] = b;
+		coords[k+2] = c;
+		coords[k+3] = d;
+		coords[k+4] = e;
+		coords[k+5] = f;
+		objects[i] = o;
+		k = 4 * i;
+		bounds[k] = minX;
+		bounds[k+1] = minY;
+		bounds[k+2] = maxX;
+		bounds[k+3] = maxY;
+
+		long h = hash(i);
+		for (int r = r0; r <= r1; r++)
+			for (int col = c0; col <= c1; col++) {
+				int cell = r * GRID + col;
+				cellHash[cell] = (cellHash[cell] + h) * 0x9e3779b97f4a7c15L;
+			}
+	}
+
+	/**
+	 * Hashes everything a command draws: its operation, its coordinates, its
+	 * state and its string or image. An image is the same only if it is the
+	 * same object, so a layer drawn again changes the hash.
+	 */
+	private long hash(int i) {
+		long h = op[i];
+		for (int k = 6 * i; k < 6 * i + 6; k++)
+			h = h * 31 + Double.doubleToLongBits(coords[k]);
+		if (op[i] == DRAW_POLY || op[i] == FILL_POLY)
+			for (int p = (int) coords[6*i]; p < (int) coords[6*i] + 2 * (int) coords[6*i+1]; p++)
+				h = h * 31 + Double.doubleToLongBits(points[p]);
+		int s = state[i];
+		h = h * 31 + colors[stateColor[s]].getRGB();
+		if (stateStroke[s] != NONE)
+			h = h * 31 + Float.floatToIntBits(strokes[stateStroke[s]].getLineWidth());
+		if (stateFont[s] != NONE)
+			h = h * 31 + fonts[stateFont[s]].hashCode();
+		Object o = objects[i];
+		if (o instanceof String)
+			h = h * 31 + o.hashCode();
+		else if (o != null)
+			h = h * 31 + System.identityHashCode(o);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		return h ^ h >>> 33;
+	}
+
+	private int cellX(double x) {
+		return Math.max(0, Math.min(GRID - 1, (int) (x / cellWidth)));
+	}
+
+	private int cellY(double y) {
+		return Math.max(0, Math.min(GRID - 1, (int) (y / cellHeight)));
+	}
+
+	/**
+	 * Doubles the capacity of the buffer.
+	 */
+	private void grow() {
+		int capacity = op.length * 2;
+		op = Arrays.copyOf(op, capacity);
+		state = Arrays.copyOf(state, capacity);
+		level = Arrays.copyOf(level, capacity);
+		coords = Arrays.copyOf(coords, 6 * capacity);
+		bounds = Arrays.copyOf(bounds, 4 * capacity);
+		objects = Arrays.copyOf(objects, capacity);
+		keys = new long[Math.min(capacity, MAX_SIZE)];
+	}
+
+	/**
+	 * Forgets the commands recorded and empties the palettes. The current
+	 * state is kept, it is added again to the palettes when used.
+	 */
+	void reset() {
+		Arrays.fill(objects, 0, size, null);
+		size = 0;
+		pointCount = 0;
+		Arrays.fill(cellLevel, -1);
+		Arrays.fill(cellHash, 0);
+		cleared = false;
+		minX = minY = Double.POSITIVE_INFINITY;
+		maxX = maxY = Double.NEGATIVE_INFINITY;
+		colorCount = strokeCount = fontCount = stateCount = 0;
+		colorIndex = strokeIndex = fontIndex = NONE;
+		fillState = strokeState = textState = NONE;
+	}
+
+	/**
+	 * Gives the pixels of the canvas covered by the commands recorded.
+	 * @return the bounds, empty when there is no command
+	 */
+	Rectangle getBounds() {
+		if (size == 0)
+			return new Rectangle();
+		int x0 = Math.max(0, (int) Math.floor(minX)), y0 = Math.max(0, (int) Math.floor(minY));
+		int x1 = Math.min(width, (int) Math.ceil(maxX));
+		int y1 = Math.min(height, (int) Math.ceil(maxY));
+		return new Rectangle(x0, y0, Math.max(0, x1 - x0), Math.max(0, y1 - y0));
+	}
+
+	/**
+	 * Checks whether the frame starts by clearing the whole canvas, so it
+	 * does not depend on what was drawn on the canvas before.
+	 * @return whether the frame covers the canvas
+	 */
+	boolean coversCanvas() {
+		return cleared;
+	}
+
+	/**
+	 * Gives the regions of the canvas where the frame differs from the frame
+	 * drawn before, and keeps the hashes of the frame in their place. The
+	 * regions are the cells whose hash changed, merged in rectangles: each
+	 * row of cells gives runs of changed cells, and a run is merged with the
+	 * run right above it when they have the same columns.
+	 * @param shown the hashes of the cells of the frame on the canvas, replaced by the ones of this frame
+	 * @return the regions, in the coordinates of the canvas
+	 */
+	List<Rectangle> diff(long[] shown) {
+		List<Rectangle> regions = new ArrayList<Rectangle>();
+		Rectangle[] above = new Rectangle[GRID];	// The region ending on the row above, by its first column
+		Rectangle[] current = new Rectangle[GRID];
+		for (int r = 0; r < GRID; r++) {
+			int y0 = (int) Math.floor(r * cellHeight), y1 = (int) Math.min(height, Math.ceil((r + 1) * cellHeight));
+			for (int col = 0; col < GRID; ) {
+				if (shown[r * GRID + col] == cellHash[r * GRID + col]) {
+					col++;
+					continue;
+				}
+				int first = col;
+				while (col < GRID && shown[r * GRID + col] != cellHash[r * GRID + col])
+					col++;
+				int x0 = (int) Math.floor(first * cellWidth), x1 = (int) Math.min(width, Math.ceil(col * cellWidth));
+				Rectangle region = above[first];
+				if (region != null && region.x == x0 && region.width == x1 - x0)
+					region.height = y1 - region.y;
+				else {
+					region = new Rectangle(x0, y0, x1 - x0, y1 - y0);
+					regions.add(region);
+				}
+				current[first] = region;
+			}
+			Rectangle[] t = above;
+			above = current;
+			current = t;
+			Arrays.fill(current, null);
+		}
+		System.arraycopy(cellHash, 0, shown, 0, CELLS);
+		return regions;
+	}
+
+	/**
+	 * Gives the amount of commands recorded.
+	 * @return the amount of commands
+	 */
+	int size() {
+		return size;
+	}
+
+	// Drawing
+
+	/**
+	 * Draws the commands recorded, sorted by level then state, and empties
+	 * the buffer. A frame of more than MAX_SIZE commands is drawn in the
+	 * order it was recorded. The graphics are left with the current state.
+	 * @param target the graphics to draw on
+	 */
+	void flush(Graphics2D target) {
+		flush(target, null);
+	}
+
+	/**
+	 * Draws the commands recorded in the given regions of the canvas only,
+	 * clipped to each of them in turn, and empties the buffer. The other
+	 * pixels of the canvas are left as they are.
+	 * @param target the graphics to draw on
+	 * @param regions the regions to draw, the whole canvas if null
+	 */
+	void flush(Graphics2D target, List<Rectangle> regions) {
+		int n = size;
+		boolean sorted = n <= MAX_SIZE;
+		if (sorted) {
+			for (int i = 0; i < n; i++)
+				keys[i] = (long) level[i] << 40 | (long) state[i] << 20 | i;
+			Arrays.sort(keys, 0, n);
+		}
+
+		if (regions == null)
+			draw(target, sorted, null);
+		else {
+			Shape clip = target.getClip();
+			for (Rectangle region : regions) {
+				target.clipRect(region.x, region.y, region.width, region.height);
+				draw(target, sorted, region);
+				target.setClip(clip);
+			}
+		}
+
+		if (color != null) {
+			target.setColor(color);
+			target.setStroke(getStroke());
+		}
+		if (font != null)
+			target.setFont(font);
+		reset();
+	}
+
+	/**
+	 * Draws the commands in order, changing the state of the graphics when needed.
+	 * @param target the graphics to draw on
+	 * @param sorted whether the commands are sorted
+	 * @param region the region drawn, the commands outside of it are skipped, null for the whole canvas
+	 */
+	private void draw(Graphics2D target, boolean sorted, Rectangle region) {
+		int n = size;
+		FontRenderContext context = null;
+		int applied = -1;
+		int appliedColor = -1, appliedStroke = -1, appliedFont = -1;
+		FontMetrics metrics = null;
+		for (int k = 0; k < n; k++) {
+			int i = sorted ? (int) (keys[k] & 0xfffff) : k;
+			if (region != null && (bounds[4*i] >= region.x + region.width || bounds[4*i+2] <= region.x
+					|| bounds[4*i+1] >= region.y + region.height || bounds[4*i+3] <= region.y))
+				continue;
+			int s = state[i];
+			if (s != applied) {
+				applied = s;
+				int c = stateColor[s], st = stateStroke[s], f = stateFont[s];
+				if (c != appliedColor) {
+					target.setColor(colors[c]);
+					appliedColor = c;
+				}
+				if (st != NONE && st != appliedStroke) {
+					target.setStroke(strokes[st]);
+					appliedStroke = st;
+				}
+				if (f != NONE && f != appliedFont) {
+					target.setFont(fonts[f]);
+					metrics = target.getFontMetrics();
+					context = target.getFontRenderContext();
+					appliedFont = f;
+				}
+			}
+			draw(target, i, metrics, context);
+		}
+	}
+
+	/**
+	 * Draws a command with the state already applied.
+	 * @param target the graphics to draw on
+	 * @param i the command
+	 * @param metrics the metrics of the current font
+	 * @param context the font render context of the graphics
+	 */
+	private void draw(Graphics2D target, int i, FontMetrics metrics, FontRenderContext context) {
+		int k = 6 * i;
+		double a = coords[k], b = coords[k+1], c = coords[k+2], d = coords[k+3];
+		switch (op[i]) {
+			case LINE:
+				line.setLine(a, b, c, d);
+				target.draw(line);
+				break;
+			case DRAW_RECT:
+				rect.setRect(a, b, c, d);
+				target.draw(rect);
+				break;
+			case FILL_RECT:
+				rect.setRect(a, b, c, d);
+				target.fill(rect);
+				break;
+			case DRAW_ELLIPSE:
+				ellipse.setFrame(a, b, c, d);
+				target.draw(ellipse);
+				break;
+			case FILL_ELLIPSE:
+				ellipse.setFrame(a, b, c, d);
+				target.fill(ellipse);
+				break;
+			case ARC:
+				arc.setArc(a, b, c, d, coords[k+4], coords[k+5], Arc2D.OPEN);
+				target.draw(arc);
+				break;
+			case PIXEL:
+				target.fillRect((int) a, (int) b, 1, 1);
+				break;
+			case DRAW_POLY:
+			case FILL_POLY:
+				int start = (int) a, n = (int) b;
+				path.reset();
+				path.moveTo((float) points[start], (float) points[start+1]);
+				for (int p = 0; p < n; p++)
+					path.lineTo((float) points[start+2*p], (float) points[start+2*p+1]);
+				path.closePath();
+				if (op[i] == FILL_POLY)
+					target.fill(path);
+				else
+					target.draw(path);
+				break;
+			case TEXT:
+				String s = (String) objects[i];
+				int hs = metrics.getDescent();
+				if (d == 0) {
+					texts.draw(target, context, s, metrics, a, b + hs, (int) c);
+					break;
+				}
+				double x = a;
+				if (c == CENTER)
+					x -= metrics.stringWidth(s) / 2.0;
+				else if (c == RIGHT)
+					x -= metrics.stringWidth(s);
+				AffineTransform rotated = target.getTransform();
+				target.rotate(Math.toRadians(-d), a, b);
+				target.drawString(s, (float) x, (float) (b + hs));
+				target.setTransform(rotated);
+				break;
+			case IMAGE:
+				Image image = (Image) objects[i];
+				double degrees = coords[k+4];
+				AffineTransform t = target.getTransform();
+				if (degrees != 0)
+					target.rotate(Math.toRadians(-degrees), a, b);
+				if (coords[k+5] != 0)
+					target.drawImage(image, (int) Math.round(a - c/2.0), (int) Math.round(b - d/2.0),
+							(int) Math.round(c), (int) Math.round(d), null);
+				else
+					target.drawImage(image, (int) Math.round(a - c/2.0), (int) Math.round(b - d/2.0), null);
+				target.setTransform(t);
+				break;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package display;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A layer is a part of the drawing which rarely changes. It is drawn once
+ * into an image, between StdDraw.beginLayer and StdDraw.endLayer, then
+ * each frame only draws that image with StdDraw.layer, until the layer
+ * is invalidated and drawn again.
+ *
+ * The image only covers the pixels drawn by the layer, at the resolution
+ * of the canvas, so drawing it is a plain copy of these pixels.
+ */
+public final class Layer {
+
+	BufferedImage	image;		// The drawing of the layer, null when it is empty
+	int				x;			// The left of the image on the canvas
+	int				y;			// The top of the image on the canvas
+	int				width;		// The width of the image on the canvas
+	int				height;		// The height of the image on the canvas
+	boolean			valid;		// Whether the image is up to date
+
+	/**
+	 * Checks whether the layer is up to date, so it does not need to be drawn again.
+	 * @return whether the layer is valid
+	 */
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Marks the layer as out of date, it has to be drawn again before being shown.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+}
@@ -0,0 +1,79 @@
+package display;
+
+import java.awt.event.MouseEvent;
+
+/**
+ * A mouse state is the position and the button of the mouse after an
+ * event of the StdDraw window. It never changes: each event publishes a
+ * new state, numbered one more than the previous one, so a state read
+ * always holds the press and the position of the same event.
+ */
+public final class MouseState {
+
+	private final double	x;			// The X position, in user coordinates
+	private final double	y;			// The Y position, in user coordinates
+	private final int		button;		// The button pressed, MouseEvent.NOBUTTON when none is
+	private final long		sequence;	// The number of the event, 0 before any event
+
+	MouseState(double x, double y, int button, long sequence) {
+		this.x = x;
+		this.y = y;
+		this.button = button;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Gives the state after the mouse moved.
+	 * @param x the new X position, in user coordinates
+	 * @param y the new Y position, in user coordinates
+	 * @return the next state
+	 */
+	MouseState moved(double x, double y) {
+		return new MouseState(x, y, button, sequence + 1);
+	}
+
+	/**
+	 * Gives the state after a button was pressed.
+	 * @param x the X position of the press, in user coordinates
+	 * @param y the Y position of the press, in user coordinates
+	 * @param button the button pressed, one of the MouseEvent.BUTTON constants
+	 * @return the next state
+	 */
+	MouseState pressed(double x, double y, int button) {
+		return new MouseState(x, y, button, sequence + 1);
+	}
+
+	/**
+	 * Gives the state after the button was released, at the same position.
+	 * @return the next state
+	 */
+	MouseState released() {
+		return new MouseState(x, y, MouseEvent.NOBUTTON, sequence + 1);
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public boolean isPressed() {
+		return button != MouseEvent.NOBUTTON;
+	}
+
+	public int getButton() {
+		return button;
+	}
+
+	/**
+	 * Gives the number of the event of the state. Two states read with
+	 * the same number are the same, so a poller knows whether anything
+	 * happened since its last read.
+	 * @return the number of the event, 0 before any event
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+}
@@ -24,17 +24,23 @@ package display;
  ******************************************************************************/
 
 import java.awt.BasicStroke;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.FileDialog;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
 import java.awt.MediaTracker;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
@@ -47,16 +53,21 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
+import java.awt.image.VolatileImage;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -381,11 +392,13 @@ import javax.swing.KeyStroke;
  *  <li> {@link #isMousePressed()}
  *  <li> {@link #mouseX()}
  *  <li> {@link #mouseY()}
+ *  <li> {@link #mouseState()}
  *  </ul>
  *  <p>
  *  The first method tells you whether a mouse button is currently being pressed.
- *  The last two methods tells you the <em>x</em>- and <em>y</em>-coordinates of the mouse's
+ *  The next two methods tells you the <em>x</em>- and <em>y</em>-coordinates of the mouse's
  *  current position, using the same coordinate system as the canvas (the unit square, by default).
+ *  The last method gives all of them at once, as they were after the same mouse event.
  *  You should use these methods in an animation loop that waits a short while before trying
  *  to poll the mouse for its current state.
  *  You can use the following methods to intercept keyboard events:
@@ -395,7 +408,8 @@ import javax.swing.KeyStroke;
  *  <li> {@link #isKeyPressed(int keycode)}
  *  </ul>
  *  <p>
- *  If the user types lots of keys, they will be saved in a list until you process them.
+ *  If the user types lots of keys, they will be saved in a queue until you process them,
+ *  in the order they were typed.
  *  The first method tells you whether the user has typed a key (that your program has
  *  not yet processed).
  *  The second method returns the next key that the user typed (that your program has
@@ -556,6 +570,19 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     public static final Color PRINCETON_ORANGE = new Color(245, 128, 37);
 
+    /**
+     * The render profile drawing at twice the resolution of the canvas,
+     * antialiased, and downscaled with bicubic interpolation. This is the
+     * default.
+     */
+    public static final int QUALITY = 0;
+
+    /**
+     * The render profile drawing at the resolution of the canvas, on
+     * opaque images, without antialiasing nor interpolation.
+     */
+    public static final int PERFORMANCE = 1;
+
     // default colors
     private static final Color DEFAULT_PEN_COLOR   = BLACK;
     private static final Color DEFAULT_CLEAR_COLOR = WHITE;
@@ -586,7 +613,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static final double DEFAULT_YMAX = 1.0;
     private static double xmin, ymin, xmax, ymax;
 
-    // for synchronization
+    // for synchronization, the mouse lock guarding the scales
     private static Object mouseLock = new Object();
     private static Object keyLock = new Object();
 
@@ -600,20 +627,54 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static BufferedImage offscreenImage, onscreenImage;
     private static Graphics2D offscreen, onscreen;
 
+    // the render profile, and the pixels of the offscreen canvas per pixel of the canvas it gives
+    private static int profile = QUALITY;
+    private static int scale = 2;
+
+    // records the drawing while double buffering is enabled, drawn at show()
+    private static CommandBuffer buffer;
+
+    // the frames handed to the render thread, null when the frames are drawn by show()
+    private static TripleBuffer<CommandBuffer> frames;
+    private static Thread renderThread;
+    private static volatile boolean rendering;
+    private static final Object onscreenLock = new Object();
+
+    // the hashes of the cells of the frame on the offscreen canvas, only
+    // known when it was drawn by present() from a frame covering the canvas
+    private static final long[] shownCells = new long[CommandBuffer.CELLS];
+    private static boolean shownKnown;
+
+    // the layer being drawn, and what to draw on again once it is drawn
+    private static Layer drawnLayer;
+    private static CommandBuffer layerBuffer, frameBuffer;
+    private static boolean frameDefer;
+
+    // the rendering hints of the offscreen canvas, also used by the layers
+    private static RenderingHints hints;
+
     // singleton for callbacks: avoids generation of extra .class files
     private static StdDraw std = new StdDraw();
 
-    // the frame for drawing to the screen
+    // the frame for drawing to the screen, and the label showing the onscreen canvas,
+    // null without a display
     private static JFrame frame;
+    private static JLabel label;
+
+    // the accelerated backend: the offscreen canvas is in video memory, and
+    // is flipped to a canvas by its buffer strategy instead of being copied
+    private static boolean accelerated;
+    private static VolatileImage offscreenVolatile;
+    private static Canvas canvas;
+    private static BufferStrategy strategy;
 
-    // mouse state
-    private static boolean isMousePressed = false;
-    private static double mouseX = 0;
-    private static double mouseY = 0;
-    private static int mouseButton = MouseEvent.NOBUTTON;
+    // mouse state, replaced as a whole by each mouse event. Only the event
+    // thread writes it, so a volatile field is enough to publish it
+    private static volatile MouseState mouse = new MouseState(0, 0, MouseEvent.NOBUTTON, 0);
 
-    // queue of typed key characters
-    private static LinkedList<KeyEvent> keysTyped = new LinkedList<KeyEvent>();
+    // queue of typed key characters, oldest first. It is lock free, so the
+    // event thread never waits for the game loop taking the keys out of it
+    private static final ConcurrentLinkedQueue<KeyEvent> keysTyped = new ConcurrentLinkedQueue<KeyEvent>();
 
     // set of key codes currently pressed down
     private static TreeSet<Integer> keysDown = new TreeSet<Integer>();
@@ -660,13 +721,16 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 
     // init
     private static void init() {
+        disableRenderThread();
         if (frame != null) frame.setVisible(false);
-        frame = new JFrame();
-        offscreenImage = new BufferedImage(2*width, 2*height, BufferedImage.TYPE_INT_ARGB);
-        onscreenImage  = new BufferedImage(2*width, 2*height, BufferedImage.TYPE_INT_ARGB);
-        offscreen = offscreenImage.createGraphics();
-        onscreen  = onscreenImage.createGraphics();
-        offscreen.scale(2.0, 2.0);  // since we made it 2x as big
+        frame = null;
+        label = null;
+        canvas = null;
+        strategy = null;
+        offscreenImage = null;
+        offscreenVolatile = null;
+        createCanvases();
+        buffer = new CommandBuffer(width, height);
 
         setXscale();
         setYscale();
@@ -677,20 +741,28 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         setFont();
         clear();
 
-        // add antialiasing
-        RenderingHints hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING,
-                                                  RenderingHints.VALUE_ANTIALIAS_ON);
-        hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        offscreen.addRenderingHints(hints);
+        // without a display, the drawing stays on the offscreen and onscreen canvases
+        if (GraphicsEnvironment.isHeadless()) return;
 
         // frame stuff
-        RetinaImageIcon icon = new RetinaImageIcon(onscreenImage);
-        JLabel draw = new JLabel(icon);
+        frame = new JFrame();
+        Component view;
+        if (accelerated) {
+            canvas = new AcceleratedCanvas();
+            canvas.setPreferredSize(new Dimension(width, height));
+            canvas.setFocusable(false);     // the keys go to the frame
+            frame.add(canvas);
+            view = canvas;
+        }
+        else {
+            label = new JLabel(new RetinaImageIcon(onscreenImage, scale));
+            frame.setContentPane(label);
+            view = label;
+        }
 
-        draw.addMouseListener(std);
-        draw.addMouseMotionListener(std);
+        view.addMouseListener(std);
+        view.addMouseMotionListener(std);
 
-        frame.setContentPane(draw);
         frame.addKeyListener(std);    // JLabel cannot get keyboard focus
         frame.setFocusTraversalKeysEnabled(false);  // allow VK_TAB with isKeyPressed()
         frame.setResizable(false);
@@ -701,12 +773,124 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         frame.pack();
         frame.requestFocusInWindow();
         frame.setVisible(true);
+        if (accelerated) {
+            canvas.createBufferStrategy(2);
+            synchronized (onscreenLock) {
+                strategy = canvas.getBufferStrategy();
+            }
+            flip();
+        }
+    }
+
+    // creates the offscreen and onscreen canvases for the render profile,
+    // with the drawing of the previous offscreen canvas if any
+    private static void createCanvases() {
+        Image previous = accelerated ? offscreenVolatile : offscreenImage;
+        if (accelerated) {
+            offscreenImage = onscreenImage = null;
+            onscreen = null;
+            offscreenVolatile = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().createCompatibleVolatileImage(scale*width, scale*height, Transparency.OPAQUE);
+            offscreen = offscreenVolatile.createGraphics();
+        }
+        else {
+            // without antialiasing, nothing is blended with the canvas below
+            int type = profile == QUALITY ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            offscreenVolatile = null;
+            offscreenImage = new BufferedImage(scale*width, scale*height, type);
+            onscreenImage  = new BufferedImage(scale*width, scale*height, type);
+            offscreen = offscreenImage.createGraphics();
+            onscreen  = onscreenImage.createGraphics();
+        }
+        offscreen.scale(scale, scale);  // since we made it scale times as big
+        shownKnown = false;
+
+        // add antialiasing, or not
+        if (profile == QUALITY) {
+            hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+                                                      RenderingHints.VALUE_ANTIALIAS_ON);
+            hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        }
+        else {
+            hints = new RenderingHints(RenderingHints.KEY_ANTIALIASING,
+                                                      RenderingHints.VALUE_ANTIALIAS_OFF);
+            hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            hints.put(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            hints.put(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        }
+        offscreen.addRenderingHints(hints);
+
+        if (previous != null) {
+            offscreen.drawImage(previous, 0, 0, width, height, null);
+            if (onscreen != null) onscreen.drawImage(offscreenImage, 0, 0, null);
+        }
+    }
+
+    /**
+     * Sets the render profile, {@link #QUALITY} or {@link #PERFORMANCE}.
+     * It can be changed at any time: the canvases are created again at the
+     * resolution of the profile, with their drawing, and the pen is kept.
+     * The layers drawn before keep their resolution until drawn again.
+     *
+     * @param  profile the render profile
+     * @throws IllegalArgumentException unless {@code profile} is {@code QUALITY} or {@code PERFORMANCE}
+     */
+    public static void setProfile(int profile) {
+        if (profile != QUALITY && profile != PERFORMANCE) throw new IllegalArgumentException("unknown profile");
+        if (profile == StdDraw.profile) return;
+        boolean threaded = renderThread != null;
+        disableRenderThread();
+        StdDraw.profile = profile;
+        scale = profile == QUALITY ? 2 : 1;
+        createCanvases();
+        offscreen.setColor(penColor);
+        offscreen.setStroke(buffer.getStroke());
+        offscreen.setFont(font);
+        if (label != null) {
+            label.setIcon(new RetinaImageIcon(onscreenImage, scale));
+            label.repaint();
+        }
+        flip();
+        if (threaded) enableRenderThread();
+    }
+
+    /**
+     * Returns the render profile.
+     *
+     * @return the render profile, {@link #QUALITY} or {@link #PERFORMANCE}
+     */
+    public static int getProfile() {
+        return profile;
+    }
+
+    /**
+     * Selects the accelerated backend for the windows created from now on,
+     * so it should be called before {@link #setCanvasSize(int, int)}.
+     * <p>
+     * The offscreen canvas is then an image in video memory, drawn on by
+     * the accelerated pipeline where available, and {@code show()} flips
+     * it to the window with a buffer strategy instead of copying it into
+     * the onscreen image. The drawing methods are the same.
+     * Without a display, there is no window and the software backend is kept.
+     */
+    public static void enableAcceleration() {
+        accelerated = !GraphicsEnvironment.isHeadless();
+    }
+
+    /**
+     * Selects the software backend for the windows created from now on,
+     * the offscreen and onscreen canvases being images in memory. This is
+     * the default.
+     */
+    public static void disableAcceleration() {
+        accelerated = false;
     }
 
     // create the menu bar (changed to private)
     private static JMenuBar createMenuBar() {
         JMenuBar menuBar = new JMenuBar();
         JMenu menu = new JMenu("File");
+        menu.getPopupMenu().setLightWeightPopupEnabled(false);  // not hidden by the accelerated canvas
         menuBar.add(menu);
         JMenuItem menuItem1 = new JMenuItem(" Save...   ");
         menuItem1.addActionListener(std);
@@ -844,6 +1028,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     public static void clear(Color color) {
         validateNotNull(color, "color");
+        if (defer) {
+            buffer.clear(color, width, height);
+            return;
+        }
         offscreen.setColor(color);
         offscreen.fillRect(0, 0, width, height);
         offscreen.setColor(penColor);
@@ -884,9 +1072,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 
         penRadius = radius;
         float scaledPenRadius = (float) (radius * DEFAULT_SIZE);
-        BasicStroke stroke = new BasicStroke(scaledPenRadius, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-        // BasicStroke stroke = new BasicStroke(scaledPenRadius);
-        offscreen.setStroke(stroke);
+        buffer.setStroke(radius, scaledPenRadius);
+        if (!defer)
+            offscreen.setStroke(buffer.getStroke());
     }
 
     /**
@@ -921,7 +1109,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     public static void setPenColor(Color color) {
         validateNotNull(color, "color");
         penColor = color;
-        offscreen.setColor(penColor);
+        buffer.setColor(color);
+        if (!defer)
+            offscreen.setColor(penColor);
     }
 
     /**
@@ -965,6 +1155,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     public static void setFont(Font font) {
         validateNotNull(font, "font");
         StdDraw.font = font;
+        buffer.setFont(font);
     }
 
 
@@ -987,6 +1178,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(y0, "y0");
         validate(x1, "x1");
         validate(y1, "y1");
+        if (defer) {
+            buffer.line(scaleX(x0), scaleY(y0), scaleX(x1), scaleY(y1));
+            return;
+        }
         offscreen.draw(new Line2D.Double(scaleX(x0), scaleY(y0), scaleX(x1), scaleY(y1)));
         draw();
     }
@@ -1003,7 +1198,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static void pixel(double x, double y) {
         validate(x, "x");
         validate(y, "y");
-        offscreen.fillRect((int) Math.round(scaleX(x)), (int) Math.round(scaleY(y)), 1, 1);
+        if (defer)
+            buffer.pixel((int) Math.round(scaleX(x)), (int) Math.round(scaleY(y)));
+        else
+            offscreen.fillRect((int) Math.round(scaleX(x)), (int) Math.round(scaleY(y)), 1, 1);
     }
 
     /**
@@ -1028,6 +1226,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         // double hs = factorY(2*r);
         // if (ws <= 1 && hs <= 1) pixel(x, y);
         if (scaledPenRadius <= 1) pixel(x, y);
+        else if (defer) buffer.ellipse(true, xs - scaledPenRadius/2, ys - scaledPenRadius/2,
+                                       scaledPenRadius, scaledPenRadius);
         else offscreen.fill(new Ellipse2D.Double(xs - scaledPenRadius/2, ys - scaledPenRadius/2,
                                                  scaledPenRadius, scaledPenRadius));
         draw();
@@ -1053,6 +1253,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*radius);
         double hs = factorY(2*radius);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.ellipse(false, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.draw(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1077,6 +1278,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*radius);
         double hs = factorY(2*radius);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.ellipse(true, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.fill(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1107,6 +1309,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*semiMajorAxis);
         double hs = factorY(2*semiMinorAxis);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.ellipse(false, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.draw(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1136,6 +1339,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*semiMajorAxis);
         double hs = factorY(2*semiMinorAxis);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.ellipse(true, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.fill(new Ellipse2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1168,6 +1372,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*radius);
         double hs = factorY(2*radius);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.arc(xs - ws/2, ys - hs/2, ws, hs, angle1, angle2 - angle1);
         else offscreen.draw(new Arc2D.Double(xs - ws/2, ys - hs/2, ws, hs, angle1, angle2 - angle1, Arc2D.OPEN));
         draw();
     }
@@ -1192,6 +1397,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*halfLength);
         double hs = factorY(2*halfLength);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.rectangle(false, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.draw(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1216,6 +1422,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*halfLength);
         double hs = factorY(2*halfLength);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.rectangle(true, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.fill(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1244,6 +1451,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*halfWidth);
         double hs = factorY(2*halfHeight);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.rectangle(false, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.draw(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1271,6 +1479,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double ws = factorX(2*halfWidth);
         double hs = factorY(2*halfHeight);
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.rectangle(true, xs - ws/2, ys - hs/2, ws, hs);
         else offscreen.fill(new Rectangle2D.Double(xs - ws/2, ys - hs/2, ws, hs));
         draw();
     }
@@ -1301,6 +1510,17 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         int n = n1;
         if (n == 0) return;
 
+        if (defer) {
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = scaleX(x[i]);
+                ys[i] = scaleY(y[i]);
+            }
+            buffer.polygon(false, xs, ys, n);
+            return;
+        }
+
         GeneralPath path = new GeneralPath();
         path.moveTo((float) scaleX(x[0]), (float) scaleY(y[0]));
         for (int i = 0; i < n; i++)
@@ -1335,6 +1555,17 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         int n = n1;
         if (n == 0) return;
 
+        if (defer) {
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = scaleX(x[i]);
+                ys[i] = scaleY(y[i]);
+            }
+            buffer.polygon(true, xs, ys, n);
+            return;
+        }
+
         GeneralPath path = new GeneralPath();
         path.moveTo((float) scaleX(x[0]), (float) scaleY(y[0]));
         for (int i = 0; i < n; i++)
@@ -1455,7 +1686,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         int hs = image.getHeight(null);
         if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
 
-        offscreen.drawImage(image, (int) Math.round(xs - ws/2.0), (int) Math.round(ys - hs/2.0), null);
+        if (defer) buffer.image(image, xs, ys, ws, hs, false, 0);
+        else offscreen.drawImage(image, (int) Math.round(xs - ws/2.0), (int) Math.round(ys - hs/2.0), null);
         draw();
     }
 
@@ -1488,9 +1720,12 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         int hs = image.getHeight(null);
         if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
 
-        offscreen.rotate(Math.toRadians(-degrees), xs, ys);
-        offscreen.drawImage(image, (int) Math.round(xs - ws/2.0), (int) Math.round(ys - hs/2.0), null);
-        offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        if (defer) buffer.image(image, xs, ys, ws, hs, false, degrees);
+        else {
+            offscreen.rotate(Math.toRadians(-degrees), xs, ys);
+            offscreen.drawImage(image, (int) Math.round(xs - ws/2.0), (int) Math.round(ys - hs/2.0), null);
+            offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        }
 
         draw();
     }
@@ -1527,6 +1762,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         double hs = factorY(scaledHeight);
         if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
         if (ws <= 1 && hs <= 1) pixel(x, y);
+        else if (defer) buffer.image(image, xs, ys, ws, hs, true, 0);
         else {
             offscreen.drawImage(image, (int) Math.round(xs - ws/2.0),
                                        (int) Math.round(ys - hs/2.0),
@@ -1570,16 +1806,100 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         if (ws < 0 || hs < 0) throw new IllegalArgumentException("image " + filename + " is corrupt");
         if (ws <= 1 && hs <= 1) pixel(x, y);
 
-        offscreen.rotate(Math.toRadians(-degrees), xs, ys);
-        offscreen.drawImage(image, (int) Math.round(xs - ws/2.0),
-                                   (int) Math.round(ys - hs/2.0),
-                                   (int) Math.round(ws),
-                                   (int) Math.round(hs), null);
-        offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        if (defer) buffer.image(image, xs, ys, ws, hs, true, degrees);
+        else {
+            offscreen.rotate(Math.toRadians(-degrees), xs, ys);
+            offscreen.drawImage(image, (int) Math.round(xs - ws/2.0),
+                                       (int) Math.round(ys - hs/2.0),
+                                       (int) Math.round(ws),
+                                       (int) Math.round(hs), null);
+            offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        }
 
         draw();
     }
 
+   /***************************************************************************
+    *  Drawing layers.
+    ***************************************************************************/
+
+    /**
+     * Starts drawing the specified layer. Until {@link #endLayer()}, the
+     * drawing methods draw on the layer instead of the canvas.
+     *
+     * @param  layer the layer to draw
+     * @throws IllegalArgumentException if {@code layer} is {@code null}
+     * @throws IllegalStateException if a layer is already being drawn
+     */
+    public static void beginLayer(Layer layer) {
+        validateNotNull(layer, "layer");
+        if (drawnLayer != null) throw new IllegalStateException("a layer is already being drawn");
+        if (layerBuffer == null) layerBuffer = new CommandBuffer(width, height);
+        drawnLayer = layer;
+        frameBuffer = buffer;
+        frameDefer = defer;
+        buffer = layerBuffer;
+        buffer.reset();
+        setBufferPen();
+        defer = true;
+    }
+
+    /**
+     * Ends drawing the layer started by {@link #beginLayer(Layer)}, which
+     * becomes valid, and goes back to drawing on the canvas.
+     *
+     * @throws IllegalStateException if no layer is being drawn
+     */
+    public static void endLayer() {
+        if (drawnLayer == null) throw new IllegalStateException("no layer is being drawn");
+        Rectangle bounds = buffer.getBounds();
+        if (bounds.isEmpty()) {
+            buffer.reset();
+            drawnLayer.image = null;
+        }
+        else {
+            // a new image, the render thread may still be drawing the previous one
+            BufferedImage image = new BufferedImage(scale*bounds.width, scale*bounds.height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.addRenderingHints(hints);
+            g.scale(scale, scale);
+            g.translate(-bounds.x, -bounds.y);
+            buffer.flush(g);
+            g.dispose();
+            drawnLayer.image = image;
+        }
+        drawnLayer.x = bounds.x;
+        drawnLayer.y = bounds.y;
+        drawnLayer.width = bounds.width;
+        drawnLayer.height = bounds.height;
+        drawnLayer.valid = true;
+        drawnLayer = null;
+
+        buffer = frameBuffer;
+        frameBuffer = null;
+        defer = frameDefer;
+        setBufferPen();
+        if (!defer) {
+            offscreen.setColor(penColor);
+            offscreen.setStroke(buffer.getStroke());
+        }
+    }
+
+    /**
+     * Draws the specified layer, as it was last drawn.
+     *
+     * @param  layer the layer
+     * @throws IllegalArgumentException if {@code layer} is {@code null}
+     */
+    public static void layer(Layer layer) {
+        validateNotNull(layer, "layer");
+        if (layer.image == null) return;
+        if (defer) buffer.image(layer.image, layer.x + layer.width/2.0, layer.y + layer.height/2.0,
+                                layer.width, layer.height, true, 0);
+        else offscreen.drawImage(layer.image, layer.x, layer.y, layer.width, layer.height, null);
+        draw();
+    }
+
    /***************************************************************************
     *  Drawing text.
     ***************************************************************************/
@@ -1598,10 +1918,14 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(y, "y");
         validateNotNull(text, "text");
 
-        offscreen.setFont(font);
-        FontMetrics metrics = offscreen.getFontMetrics();
         double xs = scaleX(x);
         double ys = scaleY(y);
+        if (defer) {
+            buffer.text(xs, ys, text, CommandBuffer.CENTER, 0);
+            return;
+        }
+        offscreen.setFont(font);
+        FontMetrics metrics = offscreen.getFontMetrics();
         int ws = metrics.stringWidth(text);
         int hs = metrics.getDescent();
         offscreen.drawString(text, (float) (xs - ws/2.0), (float) (ys + hs));
@@ -1626,9 +1950,18 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
 
         double xs = scaleX(x);
         double ys = scaleY(y);
+        if (defer) {
+            buffer.text(xs, ys, text, CommandBuffer.CENTER, degrees);
+            return;
+        }
         offscreen.rotate(Math.toRadians(-degrees), xs, ys);
-        text(x, y, text);
+        offscreen.setFont(font);
+        FontMetrics metrics = offscreen.getFontMetrics();
+        int ws = metrics.stringWidth(text);
+        int hs = metrics.getDescent();
+        offscreen.drawString(text, (float) (xs - ws/2.0), (float) (ys + hs));
         offscreen.rotate(Math.toRadians(+degrees), xs, ys);
+        draw();
     }
 
 
@@ -1645,10 +1978,14 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(y, "y");
         validateNotNull(text, "text");
 
-        offscreen.setFont(font);
-        FontMetrics metrics = offscreen.getFontMetrics();
         double xs = scaleX(x);
         double ys = scaleY(y);
+        if (defer) {
+            buffer.text(xs, ys, text, CommandBuffer.LEFT, 0);
+            return;
+        }
+        offscreen.setFont(font);
+        FontMetrics metrics = offscreen.getFontMetrics();
         int hs = metrics.getDescent();
         offscreen.drawString(text, (float) xs, (float) (ys + hs));
         draw();
@@ -1668,10 +2005,14 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         validate(y, "y");
         validateNotNull(text, "text");
 
-        offscreen.setFont(font);
-        FontMetrics metrics = offscreen.getFontMetrics();
         double xs = scaleX(x);
         double ys = scaleY(y);
+        if (defer) {
+            buffer.text(xs, ys, text, CommandBuffer.RIGHT, 0);
+            return;
+        }
+        offscreen.setFont(font);
+        FontMetrics metrics = offscreen.getFontMetrics();
         int ws = metrics.stringWidth(text);
         int hs = metrics.getDescent();
         offscreen.drawString(text, (float) (xs - ws), (float) (ys + hs));
@@ -1710,10 +2051,123 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     /**
      * Copies offscreen buffer to onscreen buffer. There is no reason to call
      * this method unless double buffering is enabled.
+     * <p>
+     * When the frame starts with {@code clear()}, only the regions where it
+     * differs from the frame shown before are drawn, copied and repainted.
      */
     public static void show() {
-        onscreen.drawImage(offscreenImage, 0, 0, null);
-        frame.repaint();
+        if (renderThread != null) {
+            publish();
+            return;
+        }
+        present(buffer);
+    }
+
+    // draws a frame on the offscreen canvas, then copies it to the onscreen
+    // canvas and repaints it, only in the regions where it differs from the
+    // frame drawn before when both cover the canvas
+    private static void present(CommandBuffer frameBuffer) {
+        if (accelerated) {
+            synchronized (onscreenLock) {   // not while the window is flipped or saved
+                List<Rectangle> regions = drawFrame(frameBuffer, validateOffscreen());
+                if (regions == null || !regions.isEmpty()) flip();
+            }
+            return;
+        }
+
+        List<Rectangle> regions = drawFrame(frameBuffer, true);
+        synchronized (onscreenLock) {
+            if (regions == null) onscreen.drawImage(offscreenImage, 0, 0, null);
+            else for (Rectangle r : regions) {
+                int x0 = scale*r.x, y0 = scale*r.y, x1 = scale*(r.x + r.width), y1 = scale*(r.y + r.height);
+                onscreen.drawImage(offscreenImage, x0, y0, x1, y1, x0, y0, x1, y1, null);
+            }
+        }
+        if (label == null) return;  // init() draws before the window exists
+        if (regions == null) label.repaint();
+        else for (Rectangle r : regions)
+            label.repaint(r.x, r.y, r.width, r.height);
+    }
+
+    // draws a frame on the offscreen canvas, only in the regions where it
+    // differs from the frame drawn before when both cover the canvas and the
+    // canvas kept its content, and gives these regions, null for the whole canvas
+    private static List<Rectangle> drawFrame(CommandBuffer frameBuffer, boolean kept) {
+        List<Rectangle> regions = null;
+        if (frameBuffer.coversCanvas()) {
+            regions = frameBuffer.diff(shownCells);
+            if (!shownKnown || !kept) regions = null;
+            shownKnown = true;
+        }
+        else shownKnown = false;
+        frameBuffer.flush(offscreen, regions);
+        return regions;
+    }
+
+    // makes sure the offscreen canvas in video memory can be drawn on,
+    // creating it again when it no longer suits the screen, and gives
+    // whether it kept its content
+    private static boolean validateOffscreen() {
+        GraphicsConfiguration gc = canvas != null ? canvas.getGraphicsConfiguration() : null;
+        if (gc == null)
+            gc = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        int status = offscreenVolatile.validate(gc);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            offscreenVolatile = gc.createCompatibleVolatileImage(scale*width, scale*height, Transparency.OPAQUE);
+            offscreen = offscreenVolatile.createGraphics();
+            offscreen.scale(scale, scale);
+            offscreen.addRenderingHints(hints);
+            offscreen.setColor(penColor);
+            offscreen.setStroke(new BasicStroke((float) (penRadius * DEFAULT_SIZE),
+                                                BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            offscreen.setFont(font);
+        }
+        return status == VolatileImage.IMAGE_OK;
+    }
+
+    // shows the offscreen canvas in video memory on the window, through the
+    // back buffer of the canvas, until its content survives the flip
+    private static void flip() {
+        synchronized (onscreenLock) {
+            if (strategy == null) return;
+            do {
+                do {
+                    Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                    if (scale != 1) g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                                       RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(offscreenVolatile, 0, 0, width, height, null);
+                    g.dispose();
+                } while (strategy.contentsRestored());
+                strategy.show();
+            } while (strategy.contentsLost());
+        }
+    }
+
+    // hands the frame recorded to the render thread and starts recording the next one
+    private static void publish() {
+        frames.publish();
+        buffer = frames.getWriteBuffer();
+        buffer.reset();
+        setBufferPen();
+        LockSupport.unpark(renderThread);
+    }
+
+    // gives the pen to the buffer recording the drawing
+    private static void setBufferPen() {
+        buffer.setColor(penColor);
+        buffer.setStroke(penRadius, (float) (penRadius * DEFAULT_SIZE));
+        buffer.setFont(font);
+    }
+
+    // the render thread, draws the last frame published until it is stopped
+    private static void render() {
+        while (rendering) {
+            if (!frames.fetch()) {
+                LockSupport.park();
+                continue;
+            }
+            present(frames.getReadBuffer());
+        }
     }
 
     // draw onscreen if defer is false
@@ -1726,6 +2180,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * drawing methods such as {@code line()}, {@code circle()},
      * and {@code square()} will be deferred until the next call
      * to show(). Useful for animations.
+     * <p>
+     * The deferred calls are recorded in a command buffer and drawn
+     * at show(), grouped by pen color and radius so the state of the
+     * graphics changes as little as possible.
      */
     public static void enableDoubleBuffering() {
         defer = true;
@@ -1738,14 +2196,103 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * This is the default.
      */
     public static void disableDoubleBuffering() {
+        disableRenderThread();
+        buffer.flush(offscreen);
+        shownKnown = false;
+        offscreen.setColor(penColor);
+        offscreen.setStroke(buffer.getStroke());
         defer = false;
     }
 
+    /**
+     * Moves the drawing of the frames to a render thread, and enables
+     * double buffering. The frame recorded until {@code show()} is then
+     * handed to the render thread through a triple buffer, and
+     * {@code show()} returns right away: the program never waits for the
+     * drawing, and the render thread never sees a frame being recorded.
+     * <p>
+     * When the program shows frames faster than they are drawn, only the
+     * latest one is drawn, so every frame should start with {@code clear()}.
+     */
+    public static void enableRenderThread() {
+        if (renderThread != null) return;
+        enableDoubleBuffering();
+        frames = new TripleBuffer<CommandBuffer>(buffer,
+                new CommandBuffer(width, height), new CommandBuffer(width, height));
+        rendering = true;
+        renderThread = new Thread(StdDraw::render, "StdDraw render");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Stops the render thread, after it draws the last frame shown.
+     * The frames are drawn again by {@code show()}.
+     */
+    public static void disableRenderThread() {
+        if (renderThread == null) return;
+        rendering = false;
+        LockSupport.unpark(renderThread);
+        boolean interrupted = false;
+        while (renderThread.isAlive()) {
+            try {
+                renderThread.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        renderThread = null;
+        if (frames.fetch()) present(frames.getReadBuffer());
+        frames = null;
+    }
+
 
    /***************************************************************************
     *  Save drawing to a file.
     ***************************************************************************/
 
+    /**
+     * Creates an image to copy the drawing shown into, at the resolution
+     * of the offscreen canvas, with integer ARGB pixels, or RGB ones with
+     * the performance profile.
+     *
+     * @return the image
+     */
+    public static BufferedImage createFrameImage() {
+        int type = onscreenImage != null ? onscreenImage.getType() : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(scale*width, scale*height, type);
+    }
+
+    /**
+     * Copies the drawing shown by the last call to {@code show()} into the
+     * given image, created by {@link #createFrameImage()}. It also works
+     * without a display, so the frames of an animation can be written to
+     * files by another thread while the next ones are drawn.
+     *
+     * @param  image the image to copy into
+     * @throws IllegalArgumentException if {@code image} is {@code null}
+     */
+    public static void copyFrame(BufferedImage image) {
+        validateNotNull(image, "image");
+        if (onscreenImage != null && onscreenImage.getType() == image.getType()
+                && onscreenImage.getWidth() == image.getWidth() && onscreenImage.getHeight() == image.getHeight()) {
+            int[] from = ((DataBufferInt) onscreenImage.getRaster().getDataBuffer()).getData();
+            int[] to = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            synchronized (onscreenLock) {   // not while the render thread draws
+                System.arraycopy(from, 0, to, 0, from.length);
+            }
+            return;
+        }
+        BufferedImage shown = shownImage();
+        Graphics2D g = image.createGraphics();
+        synchronized (onscreenLock) {
+            g.drawImage(shown, 0, 0, image.getWidth(), image.getHeight(), null);
+        }
+        g.dispose();
+    }
+
     /**
      * Saves the drawing to using the specified filename.
      * The supported image formats are JPEG and PNG;
@@ -1762,7 +2309,9 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         // png files
         if ("png".equalsIgnoreCase(suffix)) {
             try {
-                ImageIO.write(onscreenImage, suffix, file);
+                synchronized (onscreenLock) {   // not while the render thread draws
+                    ImageIO.write(shownImage(), suffix, file);
+                }
             }
             catch (IOException e) {
                 e.printStackTrace();
@@ -1772,17 +2321,20 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
         // need to change from ARGB to RGB for JPEG
         // reference: http://archives.java.sun.com/cgi-bin/wa?A2=ind0404&L=java2d-interest&D=0&P=2727
         else if ("jpg".equalsIgnoreCase(suffix)) {
-            WritableRaster raster = onscreenImage.getRaster();
+            BufferedImage image = shownImage();
+            WritableRaster raster = image.getRaster();
             WritableRaster newRaster;
             newRaster = raster.createWritableChild(0, 0, width, height, 0, 0, new int[] {0, 1, 2});
-            DirectColorModel cm = (DirectColorModel) onscreenImage.getColorModel();
+            DirectColorModel cm = (DirectColorModel) image.getColorModel();
             DirectColorModel newCM = new DirectColorModel(cm.getPixelSize(),
                                                           cm.getRedMask(),
                                                           cm.getGreenMask(),
                                                           cm.getBlueMask());
             BufferedImage rgbBuffer = new BufferedImage(newCM, newRaster, false,  null);
             try {
-                ImageIO.write(rgbBuffer, suffix, file);
+                synchronized (onscreenLock) {   // not while the render thread draws
+                    ImageIO.write(rgbBuffer, suffix, file);
+                }
             }
             catch (IOException e) {
                 e.printStackTrace();
@@ -1819,27 +2371,31 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * @return {@code true} if the mouse is being pressed; {@code false} otherwise
      */
     public static boolean isMousePressed() {
-        synchronized (mouseLock) {
-            return isMousePressed;
-        }
+        return mouse.isPressed();
     }
     
     public static boolean isLeftClick() {
-    	synchronized (mouseLock) {
-            return mouseButton == MouseEvent.BUTTON1;
-        }
+        return mouse.getButton() == MouseEvent.BUTTON1;
     }
     
     public static boolean isRightClick() {
-    	synchronized (mouseLock) {
-            return mouseButton == MouseEvent.BUTTON3;
-        }
+        return mouse.getButton() == MouseEvent.BUTTON3;
     }
     
     public static boolean isMiddleClick() {
-    	synchronized (mouseLock) {
-            return mouseButton == MouseEvent.BUTTON2;
-        }
+        return mouse.getButton() == MouseEvent.BUTTON2;
+    }
+
+    /**
+     * Returns the state of the mouse after the last mouse event. The position
+     * and the button of a state are always the ones of the same event, unlike
+     * the ones given by calling {@link #mouseX()}, {@link #mouseY()} and
+     * {@link #isMousePressed()} one after the other.
+     *
+     * @return the state of the mouse
+     */
+    public static MouseState mouseState() {
+        return mouse;
     }
 
     /**
@@ -1850,9 +2406,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Deprecated
     public static boolean mousePressed() {
-        synchronized (mouseLock) {
-            return isMousePressed;
-        }
+        return mouse.isPressed();
     }
 
     /**
@@ -1861,9 +2415,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * @return the <em>x</em>-coordinate of the mouse
      */
     public static double mouseX() {
-        synchronized (mouseLock) {
-            return mouseX;
-        }
+        return mouse.getX();
     }
 
     /**
@@ -1872,9 +2424,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * @return <em>y</em>-coordinate of the mouse
      */
     public static double mouseY() {
-        synchronized (mouseLock) {
-            return mouseY;
-        }
+        return mouse.getY();
     }
 
 
@@ -1907,12 +2457,10 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mousePressed(MouseEvent e) {
-        synchronized (mouseLock) {
-            mouseX = StdDraw.userX(e.getX());
-            mouseY = StdDraw.userY(e.getY());
-            isMousePressed = true;
-            mouseButton = e.getButton();
-        }
+        double x = StdDraw.userX(e.getX());
+        double y = StdDraw.userY(e.getY());
+        mouse = mouse.pressed(x, y, e.getButton());
+        ButtonDispatcher.press(x, y, e.getButton());
     }
 
     /**
@@ -1920,10 +2468,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mouseReleased(MouseEvent e) {
-        synchronized (mouseLock) {
-            isMousePressed = false;
-            mouseButton = MouseEvent.NOBUTTON;
-        }
+        mouse = mouse.released();
     }
 
     /**
@@ -1931,10 +2476,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mouseDragged(MouseEvent e)  {
-        synchronized (mouseLock) {
-            mouseX = StdDraw.userX(e.getX());
-            mouseY = StdDraw.userY(e.getY());
-        }
+        mouse = mouse.moved(StdDraw.userX(e.getX()), StdDraw.userY(e.getY()));
     }
 
     /**
@@ -1942,10 +2484,7 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      */
     @Override
     public void mouseMoved(MouseEvent e) {
-        synchronized (mouseLock) {
-            mouseX = StdDraw.userX(e.getX());
-            mouseY = StdDraw.userY(e.getY());
-        }
+        mouse = mouse.moved(StdDraw.userX(e.getX()), StdDraw.userY(e.getY()));
     }
 
 
@@ -1960,13 +2499,12 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      *         by {@link #nextKeyTyped()}; {@code false} otherwise
      */
     public static boolean hasNextKeyTyped() {
-        synchronized (keyLock) {
-            return !keysTyped.isEmpty();
-        }
+        return !keysTyped.isEmpty();
     }
 
     /**
-     * Returns the next key that was typed by the user (that your program has not already processed).
+     * Returns the next key that was typed by the user (that your program has not already processed),
+     * the keys being returned in the order they were typed.
      * This method should be preceded by a call to {@link #hasNextKeyTyped()} to ensure
      * that there is a next key to process.
      * This method returns a Unicode character corresponding to the key
@@ -1978,13 +2516,11 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * @throws NoSuchElementException if there is no remaining key
      */
     public static KeyEvent nextKeyTyped() {
-        synchronized (keyLock) {
-            if (keysTyped.isEmpty()) {
-                throw new NoSuchElementException("your program has already processed all keystrokes");
-            }
-            return keysTyped.remove(keysTyped.size() - 1);
-            // return keysTyped.removeLast();
+        KeyEvent e = keysTyped.poll();
+        if (e == null) {
+            throw new NoSuchElementException("your program has already processed all keystrokes");
         }
+        return e;
     }
 
     /**
@@ -2023,8 +2559,8 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     public void keyPressed(KeyEvent e) {
         synchronized (keyLock) {
             keysDown.add(e.getKeyCode());
-            keysTyped.add(e);
         }
+        keysTyped.offer(e);
     }
 
     /**
@@ -2038,18 +2574,55 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     }
 
 
+    // the image shown in the window, a copy of the offscreen canvas in
+    // video memory with the accelerated backend
+    private static BufferedImage shownImage() {
+        if (!accelerated) return onscreenImage;
+        BufferedImage image = new BufferedImage(scale*width, scale*height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        synchronized (onscreenLock) {
+            g.drawImage(offscreenVolatile, 0, 0, null);
+        }
+        g.dispose();
+        return image;
+    }
+
+
+   /***************************************************************************
+    *  The canvas of the accelerated backend.
+    ***************************************************************************/
+
+    private static class AcceleratedCanvas extends Canvas {
+
+        private static final long serialVersionUID = 1L;
+
+        // shows the offscreen canvas again when the window is uncovered
+        public void paint(Graphics g) {
+            flip();
+        }
+
+        // the whole canvas is drawn, there is no need to clear it first
+        public void update(Graphics g) {
+            paint(g);
+        }
+    }
+
+
    /***************************************************************************
     *  For improved resolution on Mac Retina displays.
     ***************************************************************************/
 
     private static class RetinaImageIcon extends ImageIcon {
-    
-        public RetinaImageIcon(Image image) {
+
+        private final int scale;    // the pixels of the image per pixel of the icon
+
+        public RetinaImageIcon(Image image, int scale) {
             super(image);
+            this.scale = scale;
         }
 
         public int getIconWidth() {
-            return super.getIconWidth() / 2;
+            return super.getIconWidth() / scale;
         }
 
         /**
@@ -2058,16 +2631,20 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
          * @return the height in pixels of this icon
          */
         public int getIconHeight() {
-            return super.getIconHeight() / 2;
+            return super.getIconHeight() / scale;
         }
 
         public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+            if (scale == 1) {
+                super.paintIcon(c, g, x, y);
+                return;
+            }
             Graphics2D g2 = (Graphics2D) g.create();
             g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,RenderingHints.VALUE_INTERPOLATION_BICUBIC);
             g2.setRenderingHint(RenderingHints.KEY_RENDERING,RenderingHints.VALUE_RENDER_QUALITY);
             g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
-            g2.scale(0.5, 0.5);
-            super.paintIcon(c, g2, x * 2, y * 2);
+            g2.scale(1.0 / scale, 1.0 / scale);
+            super.paintIcon(c, g2, x * scale, y * scale);
             g2.dispose();
         }
     }
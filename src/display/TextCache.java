@@ -0,0 +1,92 @@
+package display;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.HashMap;
+
+/**
+ * A text cache keeps the strings drawn laid out, as glyph vectors along
+ * with their width, keyed by their content, their font and the font render
+ * context of the graphics. Drawing a string again skips mapping its
+ * characters to glyphs, placing them and measuring the string.
+ *
+ * The glyphs themselves are rasterized once by Java2D, which keeps them
+ * in its own glyph cache. A cache of whole strings rasterized in an atlas
+ * image was measured slower: copying the pixels of a string costs more
+ * than drawing the masks of its glyphs.
+ */
+final class TextCache {
+
+	private static final int MAX_STRINGS = 1024;	// The amount of strings kept after which they are forgotten
+
+	/**
+	 * The string, font and font render context a string is laid out for.
+	 */
+	private static final class Key {
+		String				text;
+		Font				font;
+		FontRenderContext	context;
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return text.equals(k.text) && font.equals(k.font) && context.equals(k.context);
+		}
+
+		@Override
+		public int hashCode() {
+			return (text.hashCode() * 31 + font.hashCode()) * 31 + context.hashCode();
+		}
+	}
+
+	/**
+	 * A string laid out.
+	 */
+	private static final class Entry {
+		GlyphVector	glyphs;		// The glyphs of the string and their positions
+		int			width;		// The width of the string given by the font metrics
+	}
+
+	private final HashMap<Key, Entry>	entries = new HashMap<Key, Entry>();
+	private final Key					probe = new Key();
+
+	/**
+	 * Draws a string aligned on (x, y) like a TEXT command.
+	 * @param target the graphics to draw on
+	 * @param context the font render context of the graphics
+	 * @param s the string
+	 * @param metrics the metrics of the font of the graphics
+	 * @param x the X position of the string
+	 * @param y the Y position of the baseline
+	 * @param align the alignment of the string on x
+	 */
+	void draw(Graphics2D target, FontRenderContext context, String s, FontMetrics metrics,
+			double x, double y, int align) {
+		probe.text = s;
+		probe.font = metrics.getFont();
+		probe.context = context;
+		Entry e = entries.get(probe);
+		if (e == null) {
+			if (entries.size() == MAX_STRINGS)
+				entries.clear();
+			Key k = new Key();
+			k.text = s;
+			k.font = probe.font;
+			k.context = context;
+			e = new Entry();
+			e.glyphs = probe.font.createGlyphVector(context, s);
+			e.width = metrics.stringWidth(s);
+			entries.put(k, e);
+		}
+		if (align == CommandBuffer.CENTER)
+			x -= e.width / 2.0;
+		else if (align == CommandBuffer.RIGHT)
+			x -= e.width;
+		target.drawGlyphVector(e.glyphs, (float) x, (float) y);
+	}
+}
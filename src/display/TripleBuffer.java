@@ -0,0 +1,76 @@
+package display;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A triple buffer hands frames from a thread writing them to a thread
+ * reading them without any lock, and without either thread ever waiting
+ * for the other.
+ *
+ * There are three slots: the one being written, the one being read, and
+ * the last frame published, waiting in the middle. Publishing swaps the
+ * written slot with the middle one, fetching swaps the read slot with
+ * it. The middle slot is an atomic integer holding its index and whether
+ * it holds a frame not read yet, so a swap is a single getAndSet. When the
+ * writer is faster, the frames the reader had no time to take are
+ * overwritten and only the latest one is read. The reader never sees a
+ * frame while it is written.
+ *
+ * @param <T> the type of the frames
+ */
+final class TripleBuffer<T> {
+
+	private static final int FRESH = 4;	// The bit set when the middle slot holds a new frame
+
+	private final Object[]		slots;
+	private final AtomicInteger	middle = new AtomicInteger(1);
+	private int					writing = 0;	// Only used by the writer
+	private int					reading = 2;	// Only used by the reader
+
+	/**
+	 * Creates a triple buffer of the given frames.
+	 */
+	TripleBuffer(T first, T second, T third) {
+		slots = new Object[] {first, second, third};
+	}
+
+	/**
+	 * Gives the frame the writer fills.
+	 * @return the frame
+	 */
+	@SuppressWarnings("unchecked")
+	T getWriteBuffer() {
+		return (T) slots[writing];
+	}
+
+	/**
+	 * Publishes the frame written, and gives the writer another frame.
+	 * The frame given may hold an old frame, never read or already read.
+	 * @return whether the previous frame published was never read
+	 */
+	boolean publish() {
+		int old = middle.getAndSet(writing | FRESH);
+		writing = old & ~FRESH;
+		return (old & FRESH) != 0;
+	}
+
+	/**
+	 * Takes the last frame published, if the reader has not read it yet.
+	 * @return whether a new frame is to be read
+	 */
+	boolean fetch() {
+		if ((middle.get() & FRESH) == 0)
+			return false;
+		reading = middle.getAndSet(reading) & ~FRESH;
+		return true;
+	}
+
+	/**
+	 * Gives the frame the reader reads, the last one fetched.
+	 * @return the frame
+	 */
+	@SuppressWarnings("unchecked")
+	T getReadBuffer() {
+		return (T) slots[reading];
+	}
+}
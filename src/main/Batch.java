@@ -0,0 +1,192 @@
+package main;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class runs many independent battles without any window,
+ * as fast as all the cores allow, and reports how the player ship
+ * performs against an ennemy. It is used to tune the weapons.
+ *
+ * Usage: Batch [-n battles] [-ennemy 0|1|2] [-seed seed] [-threads threads]
+ *              [-tick seconds] [-limit seconds]
+ * Without -ennemy, every ennemy is fought in turn.
+ *
+ * Both ships are flown by the AI of Ship, which only ever fires the
+ * first weapon. The rows of the ennemies on which that AI cannot land a
+ * hit are followed by a note, as they say nothing about the weapons:
+ * every battle against the BigShip ends as a draw at the time limit.
+ */
+public class Batch {
+
+	private static final String[] ENNEMIES = { "DummyShip", "SecondShip", "BigShip" };
+	private static final String[] NOTES = {		// Known limitation of the results of each ennemy
+		null,
+		null,
+		"the AI only fires the first weapon of each ship, a slow shotgun for the BigShip, "
+				+ "and neither side gets through the shields recharging between shots: "
+				+ "these draws are a limitation of the AI, not a result"
+	};
+	private static final int THRESHOLD = 16;	// Battles run by a task without splitting it
+
+	private final int		ennemy;		// Index of the ennemy fought
+	private final long[]	seeds;		// Seed of each battle
+	private final double	tick;		// Simulated time of a step
+	private final int		maxTicks;	// Steps after which a battle is a draw
+
+	/**
+	 * The results of a set of battles.
+	 */
+	static class Result {
+		int		battles;		// Battles fought
+		int		wins;			// Battles won by the player
+		int		losses;			// Battles lost by the player
+		double	timeToKill;		// Sum of the simulated time needed to win
+		long	hull;			// Sum of the player hull remaining at the end
+
+		/**
+		 * Adds the results of other battles to these ones.
+		 * @param other the results to add
+		 * @return these results
+		 */
+		Result merge(Result other) {
+			battles += other.battles;
+			wins += other.wins;
+			losses += other.losses;
+			timeToKill += other.timeToKill;
+			hull += other.hull;
+			return this;
+		}
+	}
+
+	/**
+	 * A task fighting a range of the battles, split in two
+	 * while the range is too large.
+	 */
+	private class BattleTask extends RecursiveTask<Result> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;		// First battle of the range
+		private final int to;		// Battle after the last one of the range
+
+		private BattleTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (to - from <= THRESHOLD) {
+				Result r = new Result();
+				for (int i = from; i < to; i++)
+					fight(seeds[i], r);
+				return r;
+			}
+			int middle = (from + to) >>> 1;
+			BattleTask left = new BattleTask(from, middle);
+			left.fork();
+			Result right = new BattleTask(middle, to).compute();
+			return right.merge(left.join());
+		}
+	}
+
+	/**
+	 * Creates the battles against the given ennemy.
+	 * @param ennemy index of the ennemy
+	 * @param battles the amount of battles
+	 * @param random the random stream giving the seed of each battle
+	 * @param tick the simulated time of a step
+	 * @param limit the simulated time after which a battle is a draw
+	 */
+	public Batch(int ennemy, int battles, Rng random, double tick, double limit) {
+		this.ennemy = ennemy;
+		this.tick = tick;
+		this.maxTicks = (int) Math.ceil(limit / tick);
+		seeds = new long[battles];
+		for (int i = 0; i < battles; i++)
+			seeds[i] = random.nextLong();
+	}
+
+	/**
+	 * Fights a battle until one of the ships is destroyed or the
+	 * time limit is reached, and adds its outcome to the results.
+	 * @param seed the seed of the battle
+	 * @param r the results to add the outcome to
+	 */
+	private void fight(long seed, Result r) {
+		World w = new World(seed, ennemy);
+		w.setAutoPilot(true);
+		int ticks = 0;
+		while (!w.isOver() && !w.isChoosingReward() && ticks < maxTicks) {
+			w.step(tick);
+			ticks++;
+		}
+		r.battles++;
+		if (w.isChoosingReward()) {
+			r.wins++;
+			r.timeToKill += ticks * tick;
+		} else if (w.isOver())
+			r.losses++;
+		r.hull += w.player.getCurrentHull();
+	}
+
+	/**
+	 * Fights all the battles on the pool.
+	 * @param pool the pool running the battles
+	 * @return the results of the battles
+	 */
+	public Result run(ForkJoinPool pool) {
+		return pool.invoke(new BattleTask(0, seeds.length));
+	}
+
+	public static void main(String[] args) {
+		int battles = 10000;
+		int ennemy = -1;
+		long seed = System.nanoTime();
+		int threads = Runtime.getRuntime().availableProcessors();
+		double tick = World.TICK;
+		double limit = 300;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "-n":			battles = Integer.parseInt(args[i+1]); break;
+				case "-ennemy":		ennemy = Integer.parseInt(args[i+1]); break;
+				case "-seed":		seed = Long.parseLong(args[i+1]); break;
+				case "-threads":	threads = Integer.parseInt(args[i+1]); break;
+				case "-tick":		tick = Double.parseDouble(args[i+1]); break;
+				case "-limit":		limit = Double.parseDouble(args[i+1]); break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		// The battles are not worth printing one event at a time
+		Log.setEnabled(false);
+
+		System.out.println("Seed: " + seed + ", threads: " + threads + ", tick: " + tick + " s");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Rng random = new Rng(seed);
+		for (int e = 0; e < ENNEMIES.length; e++) {
+			// Every ennemy gets its stream, so a row is the same when fought alone
+			Rng stream = random.split();
+			if (ennemy != -1 && ennemy != e)
+				continue;
+			Batch batch = new Batch(e, battles, stream, tick, limit);
+			long start = System.nanoTime();
+			Result r = batch.run(pool);
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format(Locale.ROOT,
+					"%-10s %d battles: win %.1f%%, loss %.1f%%, draw %.1f%%, time to kill %.1f s, hull left %.1f, %.0f battles/s",
+					ENNEMIES[e], r.battles,
+					100.0 * r.wins / r.battles,
+					100.0 * r.losses / r.battles,
+					100.0 * (r.battles - r.wins - r.losses) / r.battles,
+					r.wins == 0 ? 0 : r.timeToKill / r.wins,
+					(double) r.hull / r.battles,
+					r.battles / seconds));
+			if (NOTES[e] != null)
+				System.out.println("           note: " + NOTES[e]);
+		}
+		pool.shutdown();
+	}
+}
@@ -1,187 +1,194 @@
 package main;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
 
 import display.StdDraw;
-import ship.Tile;
 
 /**
  * The bindings class processes the key pressed by the player.
+ *
+ * Each key, with the Shift and Ctrl modifiers down or not, is bound to a
+ * command in a table, so a key is processed with a single lookup. The
+ * default bindings can be replaced by the ones of a bindings file, with
+ * one binding per line: the modifiers, the key and the command, as in
+ *
+ *     # Fires the first weapon
+ *     ctrl A fire 0
+ *     shift A deactive-weapon 0
+ *     A active-weapon 0
+ *
+ * The key is the name of a KeyEvent.VK_ constant without VK_. A key is
+ * also bound with more modifiers down than the binding has, unless a
+ * binding with more of them is given. When two bindings match as well,
+ * the first one given is used.
  */
 public class Bindings {
 
-	private World w;		// The world on which the actions act
-	
+	private static final int SHIFT	= 1;	// The Shift bit of the modifiers of the table
+	private static final int CTRL	= 2;	// The Ctrl bit of the modifiers of the table
+
+	private World							w;			// The world on which the commands act
+	private final HashMap<Integer, Binding>	table = new HashMap<Integer, Binding>();	// By key and modifiers
+
 	/**
-	 * Create the bindings
+	 * A command bound to a key, with the modifiers of its binding.
+	 */
+	private static class Binding {
+		private final Command	command;
+		private final int		modifiers;	// The modifiers given in the binding
+
+		private Binding(Command command, int modifiers) {
+			this.command = command;
+			this.modifiers = modifiers;
+		}
+	}
+
+	/**
+	 * Create the bindings, with the default keys.
+	 * The keys from U to O act on the modules.
+	 * The keys from A to R act on the weapons.
+	 * The keys from Q to F and X act on the crew.
+	 * The arrows keys act on the aiming system.
+	 * Escape kills the game.
 	 * @param w the world
 	 */
 	public Bindings(World w) {
 		this.w=w;
+
+		// Module Energy Management
+		int[] modules = { KeyEvent.VK_U, KeyEvent.VK_J, KeyEvent.VK_I, KeyEvent.VK_K, KeyEvent.VK_O };
+		for (int i = 0; i < modules.length; i++) {
+			bind(modules[i], SHIFT, new Command(Command.REMOVE_ENERGY, i + 1));
+			bind(modules[i], 0, new Command(Command.ADD_ENERGY, i + 1));
+		}
+
+		// Weapon Management
+		int[] weapons = { KeyEvent.VK_A, KeyEvent.VK_Z, KeyEvent.VK_E, KeyEvent.VK_R };
+		for (int i = 0; i < weapons.length; i++) {
+			bind(weapons[i], CTRL, new Command(Command.FIRE, i));
+			bind(weapons[i], SHIFT, new Command(Command.DEACTIVE_WEAPON, i));
+			bind(weapons[i], 0, new Command(Command.ACTIVE_WEAPON, i));
+		}
+
+		// Crew Management
+		int[] members = { KeyEvent.VK_Q, KeyEvent.VK_S, KeyEvent.VK_D, KeyEvent.VK_F };
+		for (int i = 0; i < members.length; i++) {
+			bind(members[i], SHIFT, new Command(Command.UNSELECT_MEMBER));
+			bind(members[i], 0, new Command(Command.SELECT_MEMBER, i));
+		}
+		bind(KeyEvent.VK_X, 0, new Command(Command.MOVE_MEMBER));
+
+		// Aiming System
+		bind(KeyEvent.VK_UP, 0, new Command(Command.AIM_UP));
+		bind(KeyEvent.VK_DOWN, 0, new Command(Command.AIM_DOWN));
+		bind(KeyEvent.VK_LEFT, 0, new Command(Command.AIM_LEFT));
+		bind(KeyEvent.VK_RIGHT, 0, new Command(Command.AIM_RIGHT));
+
+		bind(KeyEvent.VK_ESCAPE, 0, new Command(Command.QUIT));
 	}
-	
+
 	/**
-	 * Processes the key pressed by the player.
-	 * Escape kills the game.
-	 * The keys from 1 to 5 acts on the modules.
-	 * The keys from A to R acts on the weapons.
-	 * The keys from Q to F acts on the crew.
-	 * The arrows keys acts on the aiming system.
-	 * 
-	 * It processes only one key at the time but the
-	 * keys are popped out of a stack which prevents
-	 * key shadowing and key loss.
+	 * Binds a key to a command, for each state of the modifiers containing
+	 * the ones of the binding, unless the key is already bound there with
+	 * as many modifiers or more.
+	 * @param keyCode the code of the key, one of the KeyEvent.VK_ constants
+	 * @param modifiers the modifiers of the binding, SHIFT and CTRL
+	 * @param command the command
 	 */
-	public void processKey() {
-		if (!StdDraw.hasNextKeyTyped())
-			return;
-		KeyEvent key = StdDraw.nextKeyTyped();
-		
-		if (key.getKeyCode() == KeyEvent.VK_ESCAPE)
-			System.exit(0);
-		
-		// Module Energy Management
+	private void bind(int keyCode, int modifiers, Command command) {
+		for (int state = 0; state <= (SHIFT | CTRL); state++) {
+			if ((state & modifiers) != modifiers)
+				continue;
+			Binding b = table.get(keyCode << 2 | state);
+			if (b == null || Integer.bitCount(b.modifiers) < Integer.bitCount(modifiers))
+				table.put(keyCode << 2 | state, new Binding(command, modifiers));
+		}
+	}
 
-        if(key.getKeyCode() == KeyEvent.VK_U && key.isShiftDown())
-            w.player.removeEnergy(1);
-        else if(key.getKeyCode() == KeyEvent.VK_U)
-            w.player.addEnergy(1);
-
-        else if(key.getKeyCode() == KeyEvent.VK_J && key.isShiftDown())
-            w.player.removeEnergy(2);
-        else if(key.getKeyCode() == KeyEvent.VK_J)
-            w.player.addEnergy(2);
-
-        else if(key.getKeyCode() == KeyEvent.VK_I && key.isShiftDown())
-            w.player.removeEnergy(3);
-        else if(key.getKeyCode() == KeyEvent.VK_I)
-            w.player.addEnergy(3);
-
-        else if(key.getKeyCode() == KeyEvent.VK_K && key.isShiftDown())
-            w.player.removeEnergy(4);
-        else if(key.getKeyCode() == KeyEvent.VK_K)
-            w.player.addEnergy(4);
-
-        else if(key.getKeyCode() == KeyEvent.VK_O && key.isShiftDown())
-            w.player.removeEnergy(5);
-        else if(key.getKeyCode() == KeyEvent.VK_O)
-            w.player.addEnergy(5);
-
-
-            // Weapon Management
-        else if(key.getKeyCode() == KeyEvent.VK_A && key.isControlDown()){
-            for (Tile t : w.opponent.getLayout()){
-                if (t.isAimed())
-                    if (w.player.isWeaponShotCorrectly(w.opponent)){
-                        w.player.shotWeapon(0);
-                    }  else {
-                        w.player.missShotWeapon(0);
-                    }
-            }
-        }
-        else if(key.getKeyCode() == KeyEvent.VK_A && key.isShiftDown())
-            w.player.deactiveWeapon(0);
-        else if(key.getKeyCode() == KeyEvent.VK_A)
-            w.player.activeWeapon(0);
-
-        else if(key.getKeyCode() == KeyEvent.VK_Z && key.isControlDown())
-            for (Tile t : w.opponent.getLayout()){
-                if (t.isAimed())
-                    if (w.player.isWeaponShotCorrectly(w.opponent)){
-                        w.player.shotWeapon(1);
-                    }  else {
-                        w.player.missShotWeapon(1);
-                    }
-            }
-        else if(key.getKeyCode() == KeyEvent.VK_Z && key.isShiftDown())
-            w.player.deactiveWeapon(1);
-        else if(key.getKeyCode() == KeyEvent.VK_Z)
-            w.player.activeWeapon(1);
-
-        else if(key.getKeyCode() == KeyEvent.VK_E && key.isControlDown())
-            for (Tile t : w.opponent.getLayout()){
-                if (t.isAimed())
-                    if (w.player.isWeaponShotCorrectly(w.opponent)){
-                        w.player.shotWeapon(2);
-                    }  else {
-                        w.player.missShotWeapon(2);
-                    }
-            }
-        else if(key.getKeyCode() == KeyEvent.VK_E && key.isShiftDown())
-            w.player.deactiveWeapon(2);
-        else if(key.getKeyCode() == KeyEvent.VK_E)
-            w.player.activeWeapon(2);
-
-        else if(key.getKeyCode() == KeyEvent.VK_R && key.isControlDown())
-            for (Tile t : w.opponent.getLayout()){
-                if (t.isAimed())
-                    if (w.player.isWeaponShotCorrectly(w.opponent)){
-                        w.player.shotWeapon(3);
-                    }  else {
-                        w.player.missShotWeapon(3);
-                    }
-            }
-        else if(key.getKeyCode() == KeyEvent.VK_R && key.isShiftDown())
-            w.player.deactiveWeapon(3);
-        else if(key.getKeyCode() == KeyEvent.VK_R)
-            w.player.activeWeapon(3);
-
-            // Crew Management
-        else if(key.getKeyCode() == KeyEvent.VK_Q && key.isShiftDown())
-            w.player.unselectCrewMember();
-        else if(key.getKeyCode() == KeyEvent.VK_Q)
-            w.player.selectMember(0);
-
-        else if(key.getKeyCode() == KeyEvent.VK_S && key.isShiftDown())
-            w.player.unselectCrewMember();
-        else if(key.getKeyCode() == KeyEvent.VK_S)
-            w.player.selectMember(1);
-
-        else if(key.getKeyCode() == KeyEvent.VK_D && key.isShiftDown())
-            w.player.unselectCrewMember();
-        else if(key.getKeyCode() == KeyEvent.VK_D)
-            w.player.selectMember(2);
-
-        else if(key.getKeyCode() == KeyEvent.VK_F && key.isShiftDown())
-            w.player.unselectCrewMember();
-        else if(key.getKeyCode() == KeyEvent.VK_F)
-            w.player.selectMember(3);
-
-        else if(key.getKeyCode() == KeyEvent.VK_X && w.player.isCrewMemberSelected()){
-            w.player.getNextUnselectedTile(w.player.getSelectedTile()).setCrewMember(w.player.getSelectedMember());
-            w.player.getSelectedTile().removeCrewMember();
-            w.player.unselectCrewMember();
-        }
-
-        // Aiming System
-		else if(key.getKeyCode() == KeyEvent.VK_UP)
-			processArrowKey(KeyEvent.VK_UP);
-		else if(key.getKeyCode() == KeyEvent.VK_DOWN)
-			processArrowKey(KeyEvent.VK_DOWN);
-		else if(key.getKeyCode() == KeyEvent.VK_LEFT)
-			processArrowKey(KeyEvent.VK_LEFT);
-		else if(key.getKeyCode() == KeyEvent.VK_RIGHT)
-			processArrowKey(KeyEvent.VK_RIGHT);
+	/**
+	 * Replaces the bindings by the ones of a bindings file.
+	 * @param file the path of the file
+	 * @throws IOException if the file cannot be read or a binding is wrong,
+	 *                     the bindings are then left unchanged
+	 */
+	public void load(String file) throws IOException {
+		HashMap<Integer, Binding> previous = new HashMap<Integer, Binding>(table);
+		table.clear();
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			for (int n = 1; (line = in.readLine()) != null; n++) {
+				String[] words = line.trim().split("\\s+");
+				if (words[0].isEmpty() || words[0].startsWith("#"))
+					continue;
+
+				int i = 0;
+				int modifiers = 0;
+				for (; i < words.length && (words[i].equals("shift") || words[i].equals("ctrl")); i++)
+					modifiers |= words[i].equals("shift") ? SHIFT : CTRL;
+				if (words.length - i < 2)
+					throw new IOException(file + ":" + n + ": a binding is a key and a command");
+				int keyCode;
+				try {
+					keyCode = KeyEvent.class.getField("VK_" + words[i].toUpperCase()).getInt(null);
+				} catch (ReflectiveOperationException e) {
+					throw new IOException(file + ":" + n + ": unknown key " + words[i]);
+				}
+				int action = Command.getAction(words[i + 1]);
+				if (action == -1)
+					throw new IOException(file + ":" + n + ": unknown command " + words[i + 1]);
+				if (words.length - i != (Command.hasArgument(action) ? 3 : 2))
+					throw new IOException(file + ":" + n + ": wrong argument for " + words[i + 1]);
+				int argument = 0;
+				if (Command.hasArgument(action)) {
+					try {
+						argument = Integer.parseInt(words[i + 2]);
+					} catch (NumberFormatException e) {
+						throw new IOException(file + ":" + n + ": wrong argument for " + words[i + 1]);
+					}
+					if (!Command.isArgument(action, argument))
+						throw new IOException(file + ":" + n + ": wrong argument for " + words[i + 1]);
+				}
+				bind(keyCode, modifiers, new Command(action, argument));
+			}
+		} catch (IOException e) {
+			table.clear();
+			table.putAll(previous);
+			throw e;
+		}
 	}
 
 	/**
-	 * Process the arrow keys.
-	 * @param key the arrow key pressed
+	 * Processes every key pressed by the player since the last call,
+	 * in the order they were pressed, so a burst of keys is applied
+	 * at once instead of one key per frame.
 	 */
-	private void processArrowKey(int key) {
-		switch(key) {
-			case(KeyEvent.VK_UP):
-				w.player.aimUp(w.opponent);
-				break;
-			case(KeyEvent.VK_DOWN):
-				w.player.aimDown(w.opponent);
-				break;
-			case(KeyEvent.VK_LEFT):
-				w.player.aimLeft(w.opponent);
-				break;
-			case(KeyEvent.VK_RIGHT):
-				w.player.aimRight(w.opponent);
-				break;
+	public void processKey() {
+		while (StdDraw.hasNextKeyTyped()) {
+			KeyEvent key = StdDraw.nextKeyTyped();
+			processKey(key.getKeyCode(), key.getModifiersEx());
 		}
 	}
-	
+
+	/**
+	 * Processes a key given by its code and modifiers, whether it was
+	 * typed by the player or read back from an input log of the first
+	 * version, which recorded the keys instead of their commands.
+	 * Only the constants of KeyEvent are used so that a world can
+	 * be replayed without any window.
+	 * @param keyCode the code of the key, one of the KeyEvent.VK_ constants
+	 * @param modifiers the extended modifiers, InputEvent.SHIFT_DOWN_MASK and InputEvent.CTRL_DOWN_MASK
+	 */
+	public void processKey(int keyCode, int modifiers) {
+		int state = ((modifiers & InputEvent.SHIFT_DOWN_MASK) != 0 ? SHIFT : 0)
+				| ((modifiers & InputEvent.CTRL_DOWN_MASK) != 0 ? CTRL : 0);
+		Binding b = table.get(keyCode << 2 | state);
+		if (b == null)
+			return;
+		w.record(InputLog.COMMAND, b.command.getAction(), b.command.getArgument());
+		b.command.apply(w);
+	}
 }
@@ -0,0 +1,272 @@
+package main;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import display.StdDraw;
+
+/**
+ * This class plays back a game recorded with Start -record like Replay,
+ * and draws it without any window, writing a frame every few steps.
+ * The frames are PNG files named after their step, or a single raw file
+ * of the pixels of every frame, which are compared to find the visual
+ * changes between two versions of the game.
+ *
+ * The frames are drawn on the canvas of StdDraw, then copied into images
+ * handed to encoder threads through a bounded queue, so the world goes on
+ * while they are written. The images are reused once written, and the
+ * world only waits for the encoders when all of them are queued.
+ *
+ * Usage: Capture file [-out dir] [-every steps] [-raw] [-performance]
+ *                [-queue frames] [-threads threads]
+ */
+public class Capture {
+
+	private final File						out;		// Directory of the frames
+	private final FileChannel				raw;		// File of the raw frames, null for PNG files
+	private final BlockingQueue<BufferedImage>	free;	// Images ready to be drawn into
+	private final BlockingQueue<Frame>		queued;		// Frames waiting to be written
+	private final Thread[]					encoders;
+	private volatile IOException			failure;	// The first error of the encoders
+	private int								frames;		// Amount of frames handed to the encoders
+
+	/**
+	 * A frame to write, or the end of the frames when its image is null.
+	 */
+	private static class Frame {
+		private final BufferedImage	image;
+		private final long			tick;	// Step the frame was drawn at
+
+		private Frame(BufferedImage image, long tick) {
+			this.image = image;
+			this.tick = tick;
+		}
+	}
+
+	/**
+	 * Creates the queues and starts the encoders. The raw frames are all
+	 * written to the same file, in order, so they only have one encoder.
+	 * @param out the directory of the frames
+	 * @param raw whether the frames are written in a single raw file
+	 * @param queue the amount of frames which can wait for the encoders
+	 * @param threads the amount of encoders of the PNG files
+	 * @throws IOException if the raw file cannot be created
+	 */
+	public Capture(File out, boolean raw, int queue, int threads) throws IOException {
+		this.out = out;
+		out.mkdirs();
+		this.raw = raw ? new FileOutputStream(new File(out, "frames.raw")).getChannel() : null;
+		free = new ArrayBlockingQueue<BufferedImage>(queue);
+		queued = new ArrayBlockingQueue<Frame>(queue);
+		for (int i = 0; i < queue; i++)
+			free.add(StdDraw.createFrameImage());
+		encoders = new Thread[raw ? 1 : threads];
+		for (int i = 0; i < encoders.length; i++) {
+			encoders[i] = new Thread(this::encode, "Capture encoder " + i);
+			encoders[i].start();
+		}
+	}
+
+	/**
+	 * Copies the frame shown by StdDraw and hands it to the encoders,
+	 * waiting for an image only if all of them are queued.
+	 * @param tick the step the frame was drawn at
+	 * @throws IOException if an encoder failed to write a frame
+	 */
+	public void capture(long tick) throws IOException {
+		if (failure != null)
+			throw failure;
+		BufferedImage image = take(free);
+		StdDraw.copyFrame(image);
+		put(queued, new Frame(image, tick));
+		frames++;
+	}
+
+	/**
+	 * Waits until every frame is written and stops the encoders.
+	 * @return the amount of frames written
+	 * @throws IOException if an encoder failed to write a frame
+	 */
+	public int close() throws IOException {
+		for (int i = 0; i < encoders.length; i++)
+			put(queued, new Frame(null, 0));
+		for (Thread encoder : encoders) {
+			try {
+				encoder.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (raw != null)
+			raw.close();
+		if (failure != null)
+			throw failure;
+		return frames;
+	}
+
+	/**
+	 * The loop of an encoder, writing the frames queued until the end.
+	 * After an error, the frames are only given back so the world never
+	 * waits for them, and the error is thrown by the next capture.
+	 */
+	private void encode() {
+		ByteBuffer bytes = null;
+		ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		param.setCompressionQuality(0.9f);	// The fastest compression, the files are only compared
+		while (true) {
+			Frame f = take(queued);
+			if (f.image == null) {
+				writer.dispose();
+				return;
+			}
+			try {
+				if (failure == null) {
+					if (raw != null) {
+						int[] pixels = ((DataBufferInt) f.image.getRaster().getDataBuffer()).getData();
+						if (bytes == null)
+							bytes = ByteBuffer.allocate(4 * pixels.length);
+						bytes.clear();
+						bytes.asIntBuffer().put(pixels);
+						while (bytes.hasRemaining())
+							raw.write(bytes);
+					} else {
+						File file = new File(out, String.format("frame-%07d.png", f.tick));
+						file.delete();
+						try (ImageOutputStream stream = ImageIO.createImageOutputStream(file)) {
+							writer.setOutput(stream);
+							writer.write(null, new IIOImage(f.image, null, null), param);
+						}
+					}
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+			put(free, f.image);
+		}
+	}
+
+	private static <T> T take(BlockingQueue<T> queue) {
+		while (true) {
+			try {
+				return queue.take();
+			} catch (InterruptedException e) {
+				// The queues are only left at the end of the frames
+			}
+		}
+	}
+
+	private static <T> void put(BlockingQueue<T> queue, T t) {
+		while (true) {
+			try {
+				queue.put(t);
+				return;
+			} catch (InterruptedException e) {
+				// The queues are only left at the end of the frames
+			}
+		}
+	}
+
+	private static void usage() {
+		System.err.println("Usage: Capture file [-out dir] [-every steps] [-raw] [-performance]"
+				+ " [-queue frames] [-threads threads]");
+		System.exit(1);
+	}
+
+	// The value of an option at i, or the usage when it is missing
+	private static String value(String[] args, int i) {
+		if (i >= args.length)
+			usage();
+		return args[i];
+	}
+
+	// A value of at least 1, or the usage when it is not one
+	private static int count(String[] args, int i) {
+		try {
+			int n = Integer.parseInt(value(args, i));
+			if (n >= 1)
+				return n;
+		} catch (NumberFormatException e) {
+			// Falls through to the usage
+		}
+		usage();
+		return 0;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0)
+			usage();
+		// There is never any window, even when a display is available
+		System.setProperty("java.awt.headless", "true");
+
+		File out = new File("frames");
+		int every = 4;
+		boolean raw = false;
+		int queue = 8;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		for (int i = 1; i < args.length; i++) {
+			switch (args[i]) {
+				case "-out":			out = new File(value(args, ++i)); break;
+				case "-every":			every = count(args, ++i); break;
+				case "-raw":			raw = true; break;
+				case "-performance":	StdDraw.setProfile(StdDraw.PERFORMANCE); break;
+				case "-queue":			queue = count(args, ++i); break;
+				case "-threads":		threads = count(args, ++i); break;
+				default:
+					System.err.println("Unknown option " + args[i]);
+					usage();
+			}
+		}
+		Log.setEnabled(false);
+
+		// The same canvas as the game, drawn at show() on this thread
+		StdDraw.setCanvasSize(700, 600);
+		StdDraw.enableDoubleBuffering();
+
+		InputLog log = new InputLog(args[0]);
+		World w = new World(log.getSeed());
+		Renderer r = new Renderer(w);
+		Capture capture = new Capture(out, raw, queue, threads);
+		long start = System.nanoTime();
+		while (log.next()) {
+			// Steps until the input was handled, drawing a frame every few steps
+			while (w.getTick() < log.getTick() && !w.isOver()) {
+				w.step(World.TICK);
+				if (w.getTick() % every == 0) {
+					StdDraw.clear();
+					r.draw(0);
+					StdDraw.show();
+					capture.capture(w.getTick());
+				}
+			}
+			if (log.getKind() == InputLog.END)
+				break;
+			w.replay(log.getKind(), log.getA(), log.getB());
+		}
+		int frames = capture.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		BufferedImage image = StdDraw.createFrameImage();
+		System.out.println(String.format(Locale.ROOT,
+				"Seed: %d, %d steps (%.1f s of game), %d frames of %dx%d written to %s in %.2f s (%.1fx real time)",
+				log.getSeed(), w.getTick(), w.getTick() * World.TICK, frames, image.getWidth(), image.getHeight(),
+				out, seconds, w.getTick() * World.TICK / seconds));
+		if (raw)
+			System.out.println("Raw frames: big-endian " + (image.getType() == BufferedImage.TYPE_INT_RGB ? "0rgb" : "argb")
+					+ " pixels, one frame after the other");
+	}
+}
@@ -0,0 +1,136 @@
+package main;
+
+/**
+ * A command is an action of the player on the world, with its argument,
+ * such as adding energy to the second module or firing the first weapon.
+ * The keys are bound to commands resolved once when the bindings are
+ * loaded, and the commands are what the input logs record, so a game is
+ * played back the same whatever the keys bound to its commands.
+ */
+public class Command {
+
+	// Actions, the argument is given after the ones which take one
+	public static final int QUIT			= 0;	// Quits the game
+	public static final int ADD_ENERGY		= 1;	// Adds energy to a module, from 1 to 5
+	public static final int REMOVE_ENERGY	= 2;	// Removes energy from a module, from 1 to 5
+	public static final int ACTIVE_WEAPON	= 3;	// Activates a weapon, from 0 to 3
+	public static final int DEACTIVE_WEAPON	= 4;	// Deactivates a weapon, from 0 to 3
+	public static final int FIRE			= 5;	// Fires a weapon at the target, from 0 to 3
+	public static final int SELECT_MEMBER	= 6;	// Selects a crew member, from 0 to 3
+	public static final int UNSELECT_MEMBER	= 7;	// Unselects the crew member selected
+	public static final int MOVE_MEMBER		= 8;	// Moves the crew member selected to the next tile
+	public static final int AIM_UP			= 9;	// Aims the guns up
+	public static final int AIM_DOWN		= 10;	// Aims the guns down
+	public static final int AIM_LEFT		= 11;	// Aims the guns left
+	public static final int AIM_RIGHT		= 12;	// Aims the guns right
+
+	// The names of the actions in the bindings files, by action
+	private static final String[] NAMES = {
+		"quit", "add-energy", "remove-energy", "active-weapon", "deactive-weapon", "fire",
+		"select-member", "unselect-member", "move-member", "aim-up", "aim-down", "aim-left", "aim-right"
+	};
+	// Whether each action takes an argument
+	private static final boolean[] ARGUMENT = {
+		false, true, true, true, true, true, true, false, false, false, false, false, false
+	};
+	// The lowest and highest argument of each action
+	private static final int[] MIN_ARGUMENT = { 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+	private static final int[] MAX_ARGUMENT = { 0, 5, 5, 3, 3, 3, 3, 0, 0, 0, 0, 0, 0 };
+
+	private final int action;		// The action
+	private final int argument;		// The argument of the action, 0 if it takes none
+
+	/**
+	 * Creates a command.
+	 * @param action the action, one of the constants of Command
+	 * @param argument the argument of the action, 0 if it takes none
+	 */
+	public Command(int action, int argument) {
+		if (action < 0 || action >= NAMES.length)
+			throw new IllegalArgumentException("Unknown action " + action);
+		if (!isArgument(action, argument))
+			throw new IllegalArgumentException("Wrong argument " + argument + " for " + NAMES[action]);
+		this.action = action;
+		this.argument = argument;
+	}
+
+	/**
+	 * Creates a command without argument.
+	 * @param action the action, one of the constants of Command
+	 */
+	public Command(int action) {
+		this(action, 0);
+	}
+
+	/**
+	 * Gives the action of a name in the bindings files.
+	 * @param name the name of the action
+	 * @return the action, or -1 if there is none of this name
+	 */
+	public static int getAction(String name) {
+		for (int i = 0; i < NAMES.length; i++)
+			if (NAMES[i].equals(name))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Checks whether an action takes an argument.
+	 * @param action the action
+	 * @return whether the action takes an argument
+	 */
+	public static boolean hasArgument(int action) {
+		return ARGUMENT[action];
+	}
+
+	/**
+	 * Checks whether an argument is in the range of an action.
+	 * @param action the action
+	 * @param argument the argument, 0 for the actions which take none
+	 * @return whether the action can be given the argument
+	 */
+	public static boolean isArgument(int action, int argument) {
+		return argument >= MIN_ARGUMENT[action] && argument <= MAX_ARGUMENT[action];
+	}
+
+	/**
+	 * Applies the command to the world.
+	 * @param w the world
+	 */
+	public void apply(World w) {
+		switch (action) {
+			case QUIT:				w.quit(); break;
+			case ADD_ENERGY:		w.player.addEnergy(argument); break;
+			case REMOVE_ENERGY:		w.player.removeEnergy(argument); break;
+			case ACTIVE_WEAPON:		w.player.activeWeapon(argument); break;
+			case DEACTIVE_WEAPON:	w.player.deactiveWeapon(argument); break;
+			case FIRE:				w.player.fireWeapon(argument, w.opponent); break;
+			case SELECT_MEMBER:		w.player.selectMember(argument); break;
+			case UNSELECT_MEMBER:	w.player.unselectCrewMember(); break;
+			case MOVE_MEMBER:
+				if (w.player.isCrewMemberSelected()) {
+					w.player.getNextUnselectedTile(w.player.getSelectedTile()).setCrewMember(w.player.getSelectedMember());
+					w.player.getSelectedTile().removeCrewMember();
+					w.player.unselectCrewMember();
+				}
+				break;
+			case AIM_UP:			w.player.aimUp(w.opponent); break;
+			case AIM_DOWN:			w.player.aimDown(w.opponent); break;
+			case AIM_LEFT:			w.player.aimLeft(w.opponent); break;
+			case AIM_RIGHT:			w.player.aimRight(w.opponent); break;
+		}
+	}
+
+	public int getAction() {
+		return action;
+	}
+
+	public int getArgument() {
+		return argument;
+	}
+
+	@Override
+	public String toString() {
+		return ARGUMENT[action] ? NAMES[action] + " " + argument : NAMES[action];
+	}
+}
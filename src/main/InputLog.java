@@ -0,0 +1,180 @@
+package main;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * An input log records the seed of a world and every input the player
+ * gave it, tagged with the step of the world at which it was handled.
+ * Since the world only depends on its seed and its inputs, playing the
+ * log back into a new world plays the same game again.
+ *
+ * The log is a compact binary file: a header with the seed, then one
+ * record per input holding its kind, the steps since the previous
+ * record and two arguments, all written as variable length integers.
+ * A session of several minutes only takes a few kilobytes.
+ */
+public class InputLog {
+
+	private static final int MAGIC = 0x46544c52;	// "FTLR", the start of every log
+	private static final int VERSION = 2;			// The version of the format, 2 since the commands
+
+	// Kinds of input
+	public static final int END			= 0;	// The end of the session, no argument
+	public static final int KEY			= 1;	// A key, with its code and its modifiers
+	public static final int WEAPON_ON	= 2;	// A weapon button left clicked, with the weapon
+	public static final int WEAPON_OFF	= 3;	// A weapon button right clicked, with the weapon
+	public static final int REWARD		= 4;	// A reward chosen, with its effect
+	public static final int COMMAND		= 5;	// A command given by a key, with its action and its argument
+
+	private DataOutputStream	out;		// The file written while recording
+	private DataInputStream		in;			// The file read while playing back
+	private final long			seed;		// The seed of the world
+	private long				lastTick;	// The step of the last record
+
+	// The last record read while playing back
+	private int		kind;
+	private long	tick;
+	private int		a;
+	private int		b;
+
+	/**
+	 * Creates the log of a new game and starts recording it in a file.
+	 * @param file the path of the file
+	 * @param seed the seed of the world
+	 * @throws IOException if the file cannot be written
+	 */
+	public InputLog(String file, long seed) throws IOException {
+		this.seed = seed;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeLong(seed);
+	}
+
+	/**
+	 * Opens a recorded log to play it back.
+	 * @param file the path of the file
+	 * @throws IOException if the file cannot be read or is not a log
+	 */
+	public InputLog(String file) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		// The logs of the first version recorded the keys, they are played back with the default bindings
+		int version = in.readInt() == MAGIC ? in.readUnsignedByte() : -1;
+		if (version < 1 || version > VERSION) {
+			in.close();
+			throw new IOException(file + " is not an input log");
+		}
+		seed = in.readLong();
+	}
+
+	/**
+	 * Gives the seed of the world of the log.
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Records an input. The buttons are clicked from other threads
+	 * than the keys, so the records are written one at a time.
+	 * @param tick the step of the world at which the input is handled
+	 * @param kind the kind of input
+	 * @param a the first argument
+	 * @param b the second argument
+	 */
+	public synchronized void record(long tick, int kind, int a, int b) {
+		if (out == null)
+			return;
+		try {
+			out.writeByte(kind);
+			writeVarLong(Math.max(0, tick - lastTick));
+			writeVarLong(a);
+			writeVarLong(b);
+			lastTick = Math.max(lastTick, tick);
+		} catch (IOException e) {
+			System.err.println("Cannot record the input: " + e.getMessage());
+			out = null;
+		}
+	}
+
+	/**
+	 * Ends the recording, with the step at which the session ended.
+	 * @param tick the last step of the world
+	 */
+	public synchronized void close(long tick) {
+		record(tick, END, 0, 0);
+		try {
+			if (out != null)
+				out.close();
+		} catch (IOException e) {
+			System.err.println("Cannot save the input log: " + e.getMessage());
+		}
+		out = null;
+	}
+
+	/**
+	 * Reads the next record of the log.
+	 * The last record is always an END record. A log cut short,
+	 * for instance by a crash of the game, ends at its last complete record.
+	 * @return whether a record was read, false after the END record
+	 * @throws IOException if the file cannot be read
+	 */
+	public boolean next() throws IOException {
+		if (in == null)
+			return false;
+		try {
+			kind = in.readUnsignedByte();
+			tick += readVarLong();
+			a = (int) readVarLong();
+			b = (int) readVarLong();
+		} catch (EOFException e) {
+			kind = END;
+		}
+		if (kind == END) {
+			in.close();
+			in = null;
+		}
+		return true;
+	}
+
+	public int	getKind()	{ return kind;	}
+	public long	getTick()	{ return tick;	}
+	public int	getA()		{ return a;		}
+	public int	getB()		{ return b;		}
+
+	/**
+	 * Writes a positive number on as few bytes as possible,
+	 * seven bits at a time.
+	 * @param v the number
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeVarLong(long v) throws IOException {
+		while ((v & ~0x7fL) != 0) {
+			out.writeByte((int) (v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	/**
+	 * Reads a number written by writeVarLong.
+	 * @return the number
+	 * @throws IOException if the file cannot be read
+	 */
+	private long readVarLong() throws IOException {
+		long v = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return v;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package main;
+
+/**
+ * The log prints the events of the battle to the console.
+ * It can be silenced when many battles are simulated at once.
+ */
+public final class Log {
+
+	private static volatile boolean enabled = true;	// Whether the events are printed
+
+	private Log() { }
+
+	/**
+	 * Enables or disables the printing of the events.
+	 * @param enabled whether the events are printed
+	 */
+	public static void setEnabled(boolean enabled) {
+		Log.enabled = enabled;
+	}
+
+	/**
+	 * Prints an event of the battle if the log is enabled.
+	 * @param message the event to print
+	 */
+	public static void info(String message) {
+		if (enabled)
+			System.out.println(message);
+	}
+}
@@ -0,0 +1,47 @@
+package main;
+
+import display.StdDraw;
+
+/**
+ * The renderer draws a world to the StdDraw canvas.
+ * It is only attached to the world when a window is wanted,
+ * the world itself never draws anything.
+ */
+public class Renderer {
+
+	private World			w;				// The world to draw
+	private RewardScreen	rewardScreen;	// The reward screen shown, null when there is none
+
+	/**
+	 * Creates the renderer of the world.
+	 * @param w the world to draw
+	 */
+	public Renderer(World w) {
+		this.w = w;
+	}
+
+	/**
+	 * Draws the ships, the HUDs and the reward screen if the
+	 * player has to choose a reward.
+	 * The projectiles are drawn between their positions of the
+	 * last two steps of the world.
+	 * @param alpha how far between the last two steps to draw, from 0 to 1
+	 */
+	public void draw(double alpha) {
+		w.player.draw(alpha);
+		w.player.drawHUD();
+
+		w.opponent.draw(alpha);
+		w.opponent.drawHUD();
+
+		// The reward screen lives from the victory until the reward is chosen
+		if (w.isChoosingReward()) {
+			if (rewardScreen == null)
+				rewardScreen = new RewardScreen(w);
+			rewardScreen.draw();
+		} else if (rewardScreen != null) {
+			rewardScreen.destroy();
+			rewardScreen = null;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package main;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * This class plays back a game recorded with Start -record, without
+ * any window and as fast as the processor allows. The world is created
+ * with the seed of the log and every input is given back at the step
+ * it was handled, so the same game is played again.
+ *
+ * It is used to reproduce a bug reported by a player and, since the
+ * final state is printed, to check that a change does not alter a game.
+ *
+ * Usage: Replay file [-verbose]
+ */
+public class Replay {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: Replay file [-verbose]");
+			System.exit(1);
+		}
+		Log.setEnabled(args.length > 1 && args[1].equals("-verbose"));
+
+		InputLog log = new InputLog(args[0]);
+		World w = new World(log.getSeed());
+		int inputs = 0;
+		long start = System.nanoTime();
+		while (log.next()) {
+			// Steps until the input was handled, then gives it back
+			while (w.getTick() < log.getTick() && !w.isOver())
+				w.step(World.TICK);
+			if (log.getKind() == InputLog.END)
+				break;
+			w.replay(log.getKind(), log.getA(), log.getB());
+			inputs++;
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format(Locale.ROOT,
+				"Seed: %d, %d inputs, %d steps (%.1f s of game) replayed in %.2f s",
+				log.getSeed(), inputs, w.getTick(), w.getTick() * World.TICK, seconds));
+		System.out.println((w.hasWon() ? "Won" : w.isOver() ? "Over" : "Not over")
+				+ ", hull " + w.player.getCurrentHull()
+				+ ", state " + Integer.toHexString(w.snapshot().hashCode()));
+	}
+}
@@ -0,0 +1,81 @@
+package main;
+
+import display.Button;
+import display.StdDraw;
+import display.Vector2;
+
+/**
+ * The reward screen lets the player choose a reward after a victory.
+ * It is created once when the victory is drawn, registering its buttons,
+ * drawn every frame while the player chooses, and destroyed once the
+ * reward is chosen, unregistering them.
+ */
+public class RewardScreen {
+
+	private static final String[] LABELS = {
+		"Weapon lvl up", "Energy +3", "Reactor lvl up", "Shields lvl up", "Engine lvl up"
+	};
+	private static final double[] X = { 0.1, 0.3, 0.5, 0.7, 0.9 };	// The X position of each button
+
+	private final World				w;			// The world given the reward
+	private final RewardButton[]	buttons;	// The button of each reward, by effect
+
+	/**
+	 * A reward button gives the linked reward to the player when clicked.
+	 */
+	private class RewardButton extends Button {
+		private int effect;
+
+		private RewardButton(Vector2<Double> pos, Vector2<Double> dim,int effect) {
+			super(pos, dim, true);
+			this.effect = effect;
+		}
+
+		@Override
+		protected void onLeftClick() {
+			w.post(InputLog.REWARD, effect, 0);
+		}
+
+		@Override
+		protected void onRightClick() {
+			this.onLeftClick();
+		}
+
+		@Override
+		protected void onMiddleClick() {
+			this.onLeftClick();
+		}
+	}
+
+	/**
+	 * Creates the reward screen and its buttons.
+	 * @param w the world given the reward
+	 */
+	public RewardScreen(World w) {
+		this.w = w;
+		buttons = new RewardButton[LABELS.length];
+		for (int i = 0; i < buttons.length; i++)
+			buttons[i] = new RewardButton(new Vector2<Double>(X[i],0.65),new Vector2<Double>(0.075,0.075),i);
+	}
+
+	/**
+	 * Draws the reward buttons and the random reward given to the player.
+	 */
+	public void draw() {
+		for (int i = 0; i < buttons.length; i++) {
+			buttons[i].draw();
+			StdDraw.text(X[i],0.65,LABELS[i]);
+		}
+
+		if (w.getRewardMessage() != null)
+			StdDraw.text(0.8,0.1,w.getRewardMessage());
+	}
+
+	/**
+	 * Destroys the buttons of the screen, which no longer react to the mouse.
+	 */
+	public void destroy() {
+		for (RewardButton b : buttons)
+			b.destroy();
+	}
+}
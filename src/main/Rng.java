@@ -0,0 +1,126 @@
+package main;
+
+/**
+ * A seedable stream of random numbers used for all the randomness of a battle.
+ * Two streams created with the same seed give the same numbers, which makes
+ * a battle reproducible.
+ *
+ * A stream can be split to give an independent stream to each ship or to
+ * each world simulated in parallel. The generator is a SplitMix64, its state
+ * is a long and the odd gamma added to it at each number. A split stream is
+ * given its own gamma, derived like its seed from the parent stream, so it
+ * walks a different sequence rather than another part of the same one.
+ */
+public class Rng {
+
+	private static final long GAMMA = 0x9e3779b97f4a7c15L;	// Gamma of the streams created from a seed
+
+	private long state;		// The current state of the stream
+	private long gamma;		// Odd increment of the state
+
+	/**
+	 * Creates a stream of random numbers.
+	 * @param seed the seed of the stream
+	 */
+	public Rng(long seed) {
+		this(seed, GAMMA);
+	}
+
+	/**
+	 * Creates a stream of random numbers with its own gamma.
+	 * @param seed the seed of the stream
+	 * @param gamma the increment of the state, must be odd
+	 */
+	private Rng(long seed, long gamma) {
+		this.state = seed;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Gives the next random long.
+	 * @return a random long
+	 */
+	public long nextLong() {
+		long z = (state += gamma);
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Gives a random integer between 0 (included) and bound (excluded).
+	 * @param bound the upper bound, must be positive
+	 * @return a random integer
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		int r = (int) (nextLong() >>> 33);
+		int m = bound - 1;
+		if ((bound & m) == 0)
+			return (int) ((bound * (long) r) >> 31);
+		for (int u = r; u - (r = u % bound) + m < 0; u = (int) (nextLong() >>> 33));
+		return r;
+	}
+
+	/**
+	 * Gives a random boolean.
+	 * @return a random boolean
+	 */
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	/**
+	 * Creates a new stream independent from this one.
+	 * The seed and the gamma of the new stream are drawn from this stream
+	 * so splitting is reproducible as well.
+	 * @return the new stream
+	 */
+	public Rng split() {
+		long seed = nextLong();
+		return new Rng(seed, mixGamma(state += gamma));
+	}
+
+	/**
+	 * Turns a value of the state into a gamma, as SplittableRandom does:
+	 * the value is mixed and made odd, and a gamma with too few bit changes
+	 * between its neighbouring bits, which would give poor numbers, is
+	 * flipped to have more.
+	 * @param z the value to turn into a gamma
+	 * @return an odd gamma
+	 */
+	private static long mixGamma(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		return Long.bitCount(z ^ (z >>> 1)) < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+
+	/**
+	 * Gives the current state of the stream.
+	 * @return the state
+	 * @see #getGamma()
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Gives the gamma of the stream, which is part of its state.
+	 * @return the gamma
+	 */
+	public long getGamma() {
+		return gamma;
+	}
+
+	/**
+	 * Sets the current state of the stream.
+	 * @param state a state given by getState
+	 * @param gamma a gamma given by getGamma
+	 */
+	public void setState(long state, long gamma) {
+		this.state = state;
+		this.gamma = gamma;
+	}
+}
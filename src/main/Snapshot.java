@@ -0,0 +1,155 @@
+package main;
+import java.util.Arrays;
+
+/**
+ * A snapshot holds the whole state of a world at a given step, so the
+ * world can go back to it later, for an AI looking ahead, a rollback
+ * or a saved game.
+ *
+ * The state is not a copy of the objects of the world but a flat array
+ * of longs written and read back in the same order, so a snapshot can be
+ * taken, copied and restored without allocating once it has grown.
+ * Doubles are stored with their exact bits, a restored world steps
+ * exactly like the one the snapshot was taken from.
+ */
+public class Snapshot {
+
+	private long[]	data;		// The values of the state
+	private int		size;		// The amount of values written
+	private int		position;	// The next value to read
+
+	/**
+	 * Creates an empty snapshot.
+	 */
+	public Snapshot() {
+		this(256);
+	}
+
+	/**
+	 * Creates an empty snapshot with room for the given amount of values.
+	 * @param capacity the initial capacity
+	 */
+	public Snapshot(int capacity) {
+		data = new long[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Creates a snapshot from values given by toArray, for instance
+	 * when loading a saved game.
+	 * @param values the values of the snapshot
+	 */
+	public Snapshot(long[] values) {
+		data = values.clone();
+		size = values.length;
+	}
+
+	/**
+	 * Empties the snapshot before writing a new state in it.
+	 */
+	public void clear() {
+		size = 0;
+		position = 0;
+	}
+
+	/**
+	 * Goes back to the first value before reading the state.
+	 */
+	public void rewind() {
+		position = 0;
+	}
+
+	public void putLong(long value) {
+		if (size == data.length)
+			data = Arrays.copyOf(data, size * 2);
+		data[size++] = value;
+	}
+
+	public void putInt(int value)			{ putLong(value);								}
+	public void putDouble(double value)		{ putLong(Double.doubleToRawLongBits(value));	}
+	public void putBoolean(boolean value)	{ putLong(value ? 1 : 0);						}
+
+	public long		getLong()		{ return data[position++];						}
+	public int		getInt()		{ return (int) data[position++];				}
+	public double	getDouble()		{ return Double.longBitsToDouble(data[position++]);	}
+	public boolean	getBoolean()	{ return data[position++] != 0;					}
+
+	/**
+	 * Writes a string, as its length followed by its characters.
+	 * @param value the string
+	 */
+	public void putString(String value) {
+		putInt(value.length());
+		for (int i = 0; i < value.length(); i++)
+			putLong(value.charAt(i));
+	}
+
+	/**
+	 * Reads a string written by putString.
+	 * @return the string
+	 */
+	public String getString() {
+		char[] chars = new char[getInt()];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = (char) getLong();
+		return new String(chars);
+	}
+
+	/**
+	 * Copies the values of this snapshot into another one, reusing its array.
+	 * @param other the snapshot to copy into
+	 */
+	public void copyTo(Snapshot other) {
+		if (other.data.length < size)
+			other.data = new long[data.length];
+		System.arraycopy(data, 0, other.data, 0, size);
+		other.size = size;
+		other.position = 0;
+	}
+
+	/**
+	 * Gives a copy of this snapshot.
+	 * @return the copy
+	 */
+	public Snapshot copy() {
+		Snapshot s = new Snapshot(size);
+		copyTo(s);
+		return s;
+	}
+
+	/**
+	 * Gives the values of the snapshot, for instance to save the game.
+	 * @return a copy of the values
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+	/**
+	 * Gives the amount of values in the snapshot.
+	 * @return the size of the snapshot
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Snapshot))
+			return false;
+		Snapshot other = (Snapshot) o;
+		if (size != other.size)
+			return false;
+		for (int i = 0; i < size; i++)
+			if (data[i] != other.data[i])
+				return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		for (int i = 0; i < size; i++)
+			h = 31 * h + Long.hashCode(data[i]);
+		return h;
+	}
+}
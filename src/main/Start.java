@@ -1,45 +1,123 @@
 package main;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
 import display.StdDraw;
 
 /**
  * This class starts the game by creating the canvas
  * in which the game will be drawn in and the world as
  * well as the main loop of the game.
+ *
+ * Usage: Start [seed] [-record file] [-bindings file] [-accelerated] [-performance]
+ * With -record, the inputs of the game are recorded in the
+ * file so that it can be played back with Replay.
+ * With -bindings, the keys are bound as given in the file
+ * instead of the default bindings, see Bindings.
+ * With -accelerated, the window is drawn through the accelerated
+ * backend of StdDraw. With -performance, it is drawn with the
+ * performance profile of StdDraw instead of the quality one.
  */
 public class Start {
-	
-	public static void main(String[] args) {
+
+	private static final long TICK_NANOS = (long) (World.TICK * 1e9);	// Duration of a step
+	private static final long MAX_FRAME_NANOS = 250000000L;				// Longest frame simulated
+
+	/**
+	 * Gives the seed given as argument, or prints the usage and exits when
+	 * the argument is not a number, such as an unknown option or an option
+	 * missing its file.
+	 * @param arg the argument
+	 * @return the seed
+	 */
+	private static long parseSeed(String arg) {
+		try {
+			return Long.parseLong(arg);
+		} catch (NumberFormatException e) {
+			System.err.println("Usage: Start [seed] [-record file] [-bindings file] [-accelerated] [-performance]");
+			System.exit(1);
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		long seed = System.nanoTime();
+		String record = null;
+		String bindings = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-record") && i + 1 < args.length)
+				record = args[++i];
+			else if (args[i].equals("-bindings") && i + 1 < args.length)
+				bindings = args[++i];
+			else if (args[i].equals("-accelerated"))
+				StdDraw.enableAcceleration();
+			else if (args[i].equals("-performance"))
+				StdDraw.setProfile(StdDraw.PERFORMANCE);
+			else
+				seed = parseSeed(args[i]);
+		}
+
 		// Creates the canvas of the game
 		StdDraw.setCanvasSize(700, 600);
-		
-		// Enables double buffering to allow animation
+
+		// Enables double buffering to allow animation, the frames being
+		// drawn by a render thread so the steps never wait for the drawing
 		StdDraw.enableDoubleBuffering();
-		
-		// Creates the world
-		World w = new World();
-		
-		// Game infinite loop
-		while(true) {
-			
+		StdDraw.enableRenderThread();
+
+		// Creates the world from the seed given as argument, or a new one,
+		// and attaches a renderer to it
+		System.out.println("Seed: " + seed);
+		World w = new World(seed);
+		Renderer r = new Renderer(w);
+		if (bindings != null)
+			w.getBindings().load(bindings);
+		InputLog log = null;
+		if (record != null) {
+			log = new InputLog(record, seed);
+			w.setRecorder(log);
+		}
+
+		// Simulated time which has not been stepped yet
+		long accumulator = 0;
+		long previous = System.nanoTime();
+
+		// Game loop, until the player dies, wins or quits
+		while(!w.isOver()) {
+
+			// Measures the time spent since the last frame. A very long
+			// frame is not fully simulated so the game does not stall
+			// trying to catch up.
+			long now = System.nanoTime();
+			accumulator += Math.min(now - previous, MAX_FRAME_NANOS);
+			previous = now;
+
+			// Processes all the keys pressed during the last frame
+			w.processKey();
+
+			// Makes as many fixed steps of the world as the elapsed time allows
+			while (accumulator >= TICK_NANOS && !w.isOver()) {
+				w.step(World.TICK);
+				accumulator -= TICK_NANOS;
+			}
+
 			// Clears the canvas of the previous frame
 			StdDraw.clear();
-			
-			// Processes the key pressed during the last frame
-			w.processKey();
-			
-			// Makes a step of the world
-			w.step();
-			
-			// Draws the world to the canvas
-			w.draw();
-			
-			// Shows the canvas to screen
+
+			// Draws the world between its last two steps
+			r.draw((double) accumulator / TICK_NANOS);
+
+			// Hands the frame to the render thread
 			StdDraw.show();
-			
-			// Waits for 20 milliseconds before drawing next frame.
-			StdDraw.pause(20);
+
+			// Waits until the next step is due instead of a fixed time,
+			// there is nothing new to draw before it.
+			LockSupport.parkNanos(TICK_NANOS - accumulator - (System.nanoTime() - now));
 		}
-		
+
+		if (log != null)
+			log.close(w.getTick());
+		System.exit(0);
 	}
 
 }
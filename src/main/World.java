@@ -1,180 +1,254 @@
 package main;
-import java.util.Collection;
-import java.util.Random;
 
-import display.Button;
-import display.StdDraw;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import display.Vector2;
 import module.Module;
 import module.Shield;
 import ship.*;
 import weapon.DummyGun;
-import weapon.IonCannon;
-import weapon.MissileLauncher;
-import weapon.Projectile;
+import weapon.ProjectileStore;
 
 /**
- * The world contains the ships and draws them to screen.
+ * The world contains the ships and simulates the battle between them.
+ * The world does not draw anything, a Renderer can be attached to it
+ * when a window is wanted.
+ *
+ * The world is only changed by the thread stepping it. The buttons of
+ * the window, clicked on the event thread, post their inputs instead,
+ * which are given to the world at the start of the next step.
  */
 public class World {
-	
+
+	/**
+	 * The simulated time of a step, in seconds.
+	 * Stepping the world by a fixed time keeps the simulation
+	 * independent from the time spent drawing it.
+	 */
+	public static final double TICK = 1.0 / 120;
+
+	private static final int MAX_POSTED = 64;	// The amount of inputs waiting for a step after which they are dropped
+
+	// Messages describing the random rewards
+	private static final String[] REWARD_MESSAGES = {
+		null, "You got a new Weapon !", "You got a new Missile !", "You got a new Crew member !"
+	};
+
 	private Bindings 	bind;		// The bindings of the game.
-	private long 		time;		// The current time
 	private boolean		canContinue;// Player have to choose reward for winning
+	private boolean		isOver;		// Whether the game is over
+	private boolean		hasWon;		// Whether the player destroyed every ennemy
+	private int			rewardMessage; // Index of the message of the random reward given after a victory
+	private final long	seed;		// The seed of the random stream
+	private final Rng	random;		// The random stream of the world
+	private boolean		autoPilot;	// Whether the player ship is flown by the AI
+	private long		tick;		// The amount of steps made
+	private InputLog	recorder;	// The log the inputs are recorded in, if any
+	private final ConcurrentLinkedQueue<Input>	posted = new ConcurrentLinkedQueue<Input>();	// Inputs waiting for a step
+	private final AtomicInteger					amountPosted = new AtomicInteger();			// The size of posted
 	private Ship[] ennemies = new Ship[3];
 	private int ennemyIndex;
-	
+
 	Ship player;				// The ship of the player
 	Ship opponent;				// The ship of the opponent
-	
+
+	/**
+	 * An input posted from another thread, given to the world as read from a log.
+	 */
+	private static class Input {
+		private final int kind;
+		private final int a;
+		private final int b;
+
+		private Input(int kind, int a, int b) {
+			this.kind = kind;
+			this.a = a;
+			this.b = b;
+		}
+	}
+
 	/**
 	 * Creates the world with the bindings, the player ship
 	 * and the opponent ship.
+	 * Every random event of the battle comes from the seed, so
+	 * two worlds created with the same seed and given the same
+	 * inputs play the same battle.
+	 * @param seed the seed of the random stream of the world
+	 */
+	public World(long seed) {
+		this(seed, 0);
+	}
+
+	/**
+	 * Creates the world starting the battle against the given ennemy.
+	 * @param seed the seed of the random stream of the world
+	 * @param firstEnnemy index of the first ennemy, 0 for the DummyShip,
+	 *                    1 for the SecondShip and 2 for the BigShip
 	 */
-	public World() {
+	public World(long seed, int firstEnnemy) {
+		this.seed = seed;
+		random = new Rng(seed);
 		ennemies[0] = new DummyShip(false, new Vector2<Double>(0.8, 0.5));
 		ennemies[1] = new SecondShip(false, new Vector2<Double>(0.8, 0.5));
 		ennemies[2] = new BigShip(false, new Vector2<Double>(0.8, 0.5));
-		ennemyIndex = 0;
+		ennemyIndex = firstEnnemy;
 		bind = new Bindings(this);
 		player = new DummyShip(true, new Vector2<Double>(0.3, 0.5));
 		opponent = ennemies[ennemyIndex];
-		time = System.currentTimeMillis();
+		for (Ship e : ennemies)
+			e.setRandom(random.split());
+		player.setRandom(random.split());
+		player.getWeaponControl().setButtonActions(
+				weapon -> post(InputLog.WEAPON_ON, weapon, 0), weapon -> post(InputLog.WEAPON_OFF, weapon, 0));
 		canContinue = true;
 		hasChosenRandomReward = false;
 		hasChosenReward = false;
 	}
-	
+
 	/**
-	 * Processes the key pressed.
+	 * Processes the keys pressed since the last call.
 	 */
 	public void processKey(){
 		this.bind.processKey();
 	}
-	
+
+	/**
+	 * Gives the bindings of the keys of the game.
+	 * @return the bindings
+	 */
+	public Bindings getBindings() {
+		return bind;
+	}
+
 	/**
 	 * Makes a step in the world.
+	 * @param elapsedTime the simulated time since the last step, in seconds
 	 */
-	public void step() {
+	public void step(double elapsedTime) {
+		if (isOver)
+			return;
+		applyPosted();
+		tick++;
 		if (canContinue) {
-			player.step(((double) (System.currentTimeMillis() - time)) / 1000);
-			opponent.step(((double) (System.currentTimeMillis() - time)) / 1000);
+			player.step(elapsedTime);
+			opponent.step(elapsedTime);
 
 			opponent.ai(player);
+			if (autoPilot)
+				player.ai(opponent);
 
 			processHit(player.getProjectiles(), true);
 			processHit(opponent.getProjectiles(), false);
-
-			time = System.currentTimeMillis();
 		}
-		if (opponent.getCurrentHull() == 0){
+		if (opponent.getCurrentHull() == 0 && canContinue){
 			if (opponent.getTarget() != null){
 				opponent.getTarget().unmarkTarget();
 			}
 			opponent.setTarget(null);
 			player.setTarget(null);
 			canContinue = false;
-			StdDraw.clear();
 			player.getProjectiles().clear();
-			draw();
-			showRewardScreen();
-			if (canContinue){
-				hasChosenReward = false;
-				hasChosenRandomReward = false;
-				nextEnnemy();
-				opponent = ennemies[ennemyIndex];
+			if (!hasChosenRandomReward){
+				randomReward();
+				hasChosenRandomReward = true;
 			}
 		}
 
 		if (player.getCurrentHull() == 0){
-			System.exit(0);
+			isOver = true;
 		}
 	}
-	
+
 	/**
-	 * Processes the projectiles hit
-	 * @param projectiles collection of projectiles to check for hit
+	 * Processes the projectiles hit.
+	 * Every projectile is tested in a single pass against the shields and
+	 * the tiles, so a whole volley lands in the step it reaches the ship.
+	 * The projectiles removed are only marked during the pass, and the
+	 * store is compacted once at the end.
+	 * @param projectiles store of projectiles to check for hit
 	 * @param isPlayer whether the own of the projectiles is the player
 	 */
-	private void processHit(Collection<Projectile> projectiles, boolean isPlayer) {
-		if (!(isPlayer)){
-			processShieldHit(projectiles, player);
-			processDamageHit(projectiles, player);
-		} else {
-			processShieldHit(projectiles, opponent);
-			processDamageHit(projectiles, opponent);
+	private void processHit(ProjectileStore projectiles, boolean isPlayer) {
+		Ship ship = isPlayer ? opponent : player;
+		TileGrid grid = ship.getTileGrid();
+		for (int p = 0; p < projectiles.top(); p++) {
+			if (!projectiles.isAlive(p))
+				continue;
+			if (!processShieldHit(projectiles, p, ship, grid))
+				processDamageHit(projectiles, p, ship, grid);
 		}
+		projectiles.compact();
 	}
 
 	/**
 	 * Tests if a shield is hit by an enemy projectile.
 	 * If yes, deactivates the shield and make the projectile disappear.
-	 * @param projectiles collection of projectiles to check for hit
+	 * The whole move of the last step is tested, the shield hit is the
+	 * first one the projectile crossed. A tile reached before that shield
+	 * is left to processDamageHit without touching the shields.
+	 * @param projectiles store of projectiles
+	 * @param p slot of the projectile to check for hit
 	 * @param ship ship to hit
+	 * @param grid grid of the tiles of the ship
+	 * @return whether the projectile was stopped by a shield
 	 */
-	private void processShieldHit(Collection<Projectile> projectiles, Ship ship) {
-		for(Projectile p: projectiles) {
-			for(Shield s: ship.getShield().getShields()) {
-				if(s.isInRadius(p.getPosition()) && s.isActive()) {
-					if(p instanceof IonCannon.IonProjectile) {
-						ship.getShield().deactivateShieldByIon(s,((IonCannon.IonProjectile) p).getTime());
-					}
-					else if (!(p instanceof MissileLauncher.Missile)) { //missiles go through shields
-						ship.getShield().deactivateShield(s);
-						projectiles.remove(p);
-					}
-
-					return;
-				}
+	private boolean processShieldHit(ProjectileStore projectiles, int p, Ship ship, TileGrid grid) {
+		Shield hit = null;
+		double first = Double.POSITIVE_INFINITY;
+		for(Shield s: ship.getShield().getShields()) {
+			if (!s.isActive())
+				continue;
+			double t = s.intersect(projectiles.getPrevX(p), projectiles.getPrevY(p), projectiles.getX(p), projectiles.getY(p));
+			if (t >= 0 && t < first) {
+				first = t;
+				hit = s;
 			}
 		}
+		if (hit == null)
+			return false;
+		if (grid.sweep(projectiles.getPrevX(p), projectiles.getPrevY(p), projectiles.getX(p), projectiles.getY(p), first) != null)
+			return false;
+		if(projectiles.getType(p) == ProjectileStore.ION) {
+			ship.getShield().deactivateShieldByIon(hit, projectiles.getIonTime(p));
+		}
+		else if (projectiles.getType(p) != ProjectileStore.MISSILE) { //missiles go through shields
+			ship.getShield().deactivateShield(hit);
+			projectiles.remove(p);
+			return true;
+		}
+		return false;
 	}
 
 	/**
-	 * Test if the ship is hit by projectiles
-	 * @param projectiles collection of projectiles to check for hit
+	 * Test if the ship is hit by a projectile.
+	 * The whole move of the last step is tested against the tiles near it,
+	 * using the grid of the ship, so a fast projectile cannot go through a tile.
+	 * @param projectiles store of projectiles
+	 * @param p slot of the projectile to check for hit
 	 * @param ship ship to hit
+	 * @param grid grid of the tiles of the ship
 	 */
-	private void processDamageHit(Collection<Projectile> projectiles, Ship ship){
-		for (Projectile p: projectiles) {
-			for (Tile t: ship.getLayout()) {
-				if (p != null) {
-					if (p.isOutOfScreen()){
-						projectiles.remove(p);
-						return;
-					}
-					if (!(p.isOutOfRectangle(t.getCenterPosition().getX(), t.getCenterPosition().getY(), 0.01, 0.01))) {
-						Random rn = new Random();
-						int luck = rn.nextInt(100) + 1;
-						if(luck < ship.getEngine().getDodge()) {
-							System.out.println("You evaded a shot !");
-						} else {
-							if(t instanceof module.Module) {
-								if(p instanceof IonCannon.IonProjectile) {
-									((Module) t).deactivate(((IonCannon.IonProjectile) p).getTime());
-								}
-								((Module) t).damage(p.getDamage());
-							}
-							ship.applyDamage(p);
-						}
-						projectiles.remove(p);
-						return;
-					}
+	private void processDamageHit(ProjectileStore projectiles, int p, Ship ship, TileGrid grid){
+		Tile t = grid.sweep(projectiles.getPrevX(p), projectiles.getPrevY(p), projectiles.getX(p), projectiles.getY(p));
+		if (t == null) {
+			if (projectiles.isOutOfScreen(p))
+				projectiles.remove(p);
+			return;
+		}
+		int luck = random.nextInt(100) + 1;
+		if(luck < ship.getEngine().getDodge()) {
+			Log.info("You evaded a shot !");
+		} else {
+			if(t instanceof module.Module) {
+				if(projectiles.getType(p) == ProjectileStore.ION) {
+					((Module) t).deactivate(projectiles.getIonTime(p));
 				}
+				((Module) t).damage(projectiles.getDamage(p));
 			}
+			ship.applyDamage(projectiles.getDamage(p));
 		}
-	}
-	
-	/**
-	 * Draws the ships and HUDs.
-	 */
-	public void draw() {
-		player.draw();
-		player.drawHUD();
-		
-		opponent.draw();
-		opponent.drawHUD();
-		
+		projectiles.remove(p);
 	}
 
 	/**
@@ -182,111 +256,258 @@ public class World {
 	 */
 	private void nextEnnemy(){
 		this.ennemyIndex++;
-		if(this.ennemyIndex > 2) System.exit(0);
+		if(this.ennemyIndex > 2) {
+			hasWon = true;
+			isOver = true;
+		}
 	}
 
+	/**
+	 * Activates a weapon of the player, as its button does.
+	 * @param weapon the index of the weapon
+	 */
+	public void activeWeapon(int weapon) {
+		record(InputLog.WEAPON_ON, weapon, 0);
+		player.activeWeapon(weapon);
+	}
 
 	/**
-	 * All that follows is only useful for the reward screen.
+	 * Deactivates a weapon of the player, as its button does.
+	 * @param weapon the index of the weapon
 	 */
+	public void deactiveWeapon(int weapon) {
+		record(InputLog.WEAPON_OFF, weapon, 0);
+		player.deactiveWeapon(weapon);
+	}
 
+	/**
+	 * Posts an input to the world from any thread, such as the event thread
+	 * of the window. It is given to the world at the start of the next step,
+	 * like an input read from a log, so it is recorded and played back.
+	 * @param kind the kind of input, one of the constants of InputLog
+	 * @param a the first argument of the input
+	 * @param b the second argument of the input
+	 * @return whether the input was posted, false if too many inputs are waiting
+	 */
+	public boolean post(int kind, int a, int b) {
+		if (amountPosted.incrementAndGet() > MAX_POSTED) {
+			amountPosted.decrementAndGet();
+			return false;
+		}
+		posted.offer(new Input(kind, a, b));
+		return true;
+	}
 
-	private boolean hasChosenReward;
-	private boolean hasChosenRandomReward;
+	/**
+	 * Gives the world the inputs posted since the last step, in the order
+	 * they were posted.
+	 */
+	private void applyPosted() {
+		Input i;
+		while ((i = posted.poll()) != null) {
+			amountPosted.decrementAndGet();
+			replay(i.kind, i.a, i.b);
+		}
+	}
 
-	private class RewardButton extends Button {
-		private int effect;
+	/**
+	 * Records every input given to the world from now on in a log.
+	 * @param recorder the log to record in, null to stop recording
+	 */
+	public void setRecorder(InputLog recorder) {
+		this.recorder = recorder;
+	}
 
-		private RewardButton(Vector2<Double> pos, Vector2<Double> dim,int effect) {
-			super(pos, dim, true);
-			this.effect = effect;
+	/**
+	 * Records an input if the world is recorded.
+	 * @param kind the kind of input
+	 * @param a the first argument of the input
+	 * @param b the second argument of the input
+	 */
+	void record(int kind, int a, int b) {
+		if (recorder != null)
+			recorder.record(tick, kind, a, b);
+	}
+
+	/**
+	 * Gives back an input read from a log or posted, as the player gave it.
+	 * @param kind the kind of input
+	 * @param a the first argument of the input
+	 * @param b the second argument of the input
+	 */
+	public void replay(int kind, int a, int b) {
+		switch (kind) {
+			case InputLog.KEY:			bind.processKey(a, b); break;
+			case InputLog.COMMAND:
+				record(InputLog.COMMAND, a, b);
+				new Command(a, b).apply(this);
+				break;
+			case InputLog.WEAPON_ON:	activeWeapon(a); break;
+			case InputLog.WEAPON_OFF:	deactiveWeapon(a); break;
+			case InputLog.REWARD:		chooseReward(a); break;
 		}
+	}
 
+	/**
+	 * Gives the amount of steps made by the world.
+	 * @return the amount of steps
+	 */
+	public long getTick() {
+		return tick;
+	}
 
-		@Override
-		protected void onLeftClick() {
-			switch (this.effect) {
-				case 0:
-					player.getWeaponControl().levelUp();
-					hasChosenReward = true;
-					canContinue = true;
-					break;
-				case 2:
-					player.getReactor().levelUp();
-					hasChosenReward = true;
-					canContinue = true;
-					break;
-				case 3:
-					player.getShield().levelUp();
-					hasChosenReward = true;
-					canContinue = true;
-					break;
-				case 4:
-					player.getEngine().levelUp();
-					hasChosenReward = true;
-					canContinue = true;
-					break;
-				default: //1 is put as default as a safety measure
-					player.getReactor().increaseEnergy(3);
-					hasChosenReward = true;
-					canContinue = true;
-					break;
+	/**
+	 * Gives the seed the world was created with.
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
 
-			}
-		}
+	/**
+	 * Lets the AI fly the player ship, for battles simulated without a player.
+	 * @param autoPilot whether the AI flies the player ship
+	 */
+	public void setAutoPilot(boolean autoPilot) {
+		this.autoPilot = autoPilot;
+	}
 
-		@Override
-		protected void onRightClick() {
-			this.onLeftClick();
-		}
+	/**
+	 * Takes a snapshot of the whole state of the world.
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		Snapshot s = new Snapshot();
+		snapshot(s);
+		return s;
+	}
 
-		@Override
-		protected void onMiddleClick() {
-			this.onLeftClick();
-		}
+	/**
+	 * Takes a snapshot of the whole state of the world into an existing
+	 * snapshot, so taking many snapshots does not allocate.
+	 * @param s the snapshot to write in, its previous content is lost
+	 */
+	public void snapshot(Snapshot s) {
+		s.clear();
+		s.putLong(tick);
+		s.putBoolean(canContinue);
+		s.putBoolean(isOver);
+		s.putBoolean(hasWon);
+		s.putBoolean(hasChosenReward);
+		s.putBoolean(hasChosenRandomReward);
+		s.putInt(rewardMessage);
+		s.putInt(ennemyIndex);
+		s.putLong(random.getState());
+		s.putLong(random.getGamma());
+		player.save(s, opponent);
+		for (Ship e : ennemies)
+			e.save(s, player);
+	}
 
+	/**
+	 * Puts the world back in the state of a snapshot taken from a world
+	 * created with the same seed.
+	 * @param s the snapshot to restore
+	 */
+	public void restore(Snapshot s) {
+		s.rewind();
+		tick = s.getLong();
+		canContinue = s.getBoolean();
+		isOver = s.getBoolean();
+		hasWon = s.getBoolean();
+		hasChosenReward = s.getBoolean();
+		hasChosenRandomReward = s.getBoolean();
+		rewardMessage = s.getInt();
+		ennemyIndex = s.getInt();
+		random.setState(s.getLong(), s.getLong());
+		opponent = ennemies[Math.min(ennemyIndex, ennemies.length - 1)];
+		player.restore(s, opponent);
+		for (Ship e : ennemies)
+			e.restore(s, player);
+	}
 
+	/**
+	 * Quits the game.
+	 */
+	public void quit() {
+		isOver = true;
 	}
 
 	/**
-	 * Show reward buttons and give a random reward if it was not given yet
+	 * Checks whether the game is over, either because the player
+	 * has been destroyed, has destroyed every ennemy or has quit.
+	 * @return whether the game is over
 	 */
+	public boolean isOver() {
+		return isOver;
+	}
 
-	public void showRewardScreen() {
-		Button b0 = new RewardButton(new Vector2<Double>(0.1,0.65),new Vector2<Double>(0.075,0.075),0);
-		Button b1 = new RewardButton(new Vector2<Double>(0.3,0.65),new Vector2<Double>(0.075,0.075),1);
-		Button b2 = new RewardButton(new Vector2<Double>(0.5,0.65),new Vector2<Double>(0.075,0.075),2);
-		Button b3 = new RewardButton(new Vector2<Double>(0.7,0.65),new Vector2<Double>(0.075,0.075),3);
-		Button b4 = new RewardButton(new Vector2<Double>(0.9,0.65),new Vector2<Double>(0.075,0.075),4);
-		if (!canContinue){
+	/**
+	 * Checks whether the player destroyed every ennemy.
+	 * @return whether the player won
+	 */
+	public boolean hasWon() {
+		return hasWon;
+	}
 
-			if (!hasChosenRandomReward){
-				randomReward();
-				hasChosenRandomReward = true;
-			}
 
-			b0.draw();
-			b1.draw();
-			b2.draw();
-			b3.draw();
-			b4.draw();
+	/**
+	 * All that follows is only useful for the reward screen.
+	 */
 
-			StdDraw.text(0.1,0.65,"Weapon lvl up");
-			StdDraw.text(0.3,0.65,"Energy +3");
-			StdDraw.text(0.5,0.65,"Reactor lvl up");
-			StdDraw.text(0.7,0.65,"Shields lvl up");
-			StdDraw.text(0.9,0.65,"Engine lvl up");
 
-		}
+	private boolean hasChosenReward;
+	private boolean hasChosenRandomReward;
+
+	/**
+	 * Checks whether the player has to choose a reward before
+	 * fighting the next ennemy.
+	 * @return whether the world waits for a reward to be chosen
+	 */
+	public boolean isChoosingReward() {
+		return !canContinue && !isOver;
+	}
 
-		if(canContinue){
-			StdDraw.clear();
-			b0.destroy();
-			b1.destroy();
-			b2.destroy();
-			b3.destroy();
-			b4.destroy();
+	/**
+	 * Gives the message describing the random reward given after the last victory.
+	 * @return the message, or null if no reward was given yet
+	 */
+	public String getRewardMessage() {
+		return REWARD_MESSAGES[rewardMessage];
+	}
+
+	/**
+	 * Gives the reward chosen by the player and sends the next ennemy.
+	 * @param effect 0 for a weapon level up, 1 for 3 energy, 2 for a reactor level up,
+	 *               3 for a shield level up and 4 for an engine level up
+	 */
+	public void chooseReward(int effect) {
+		if (canContinue)
+			return;
+		record(InputLog.REWARD, effect, 0);
+		switch (effect) {
+			case 0:
+				player.getWeaponControl().levelUp();
+				break;
+			case 2:
+				player.getReactor().levelUp();
+				break;
+			case 3:
+				player.getShield().levelUp();
+				break;
+			case 4:
+				player.getEngine().levelUp();
+				break;
+			default: //1 is put as default as a safety measure
+				player.getReactor().increaseEnergy(3);
+				break;
 		}
+		canContinue = true;
+		hasChosenReward = false;
+		hasChosenRandomReward = false;
+		nextEnnemy();
+		if (!isOver)
+			opponent = ennemies[ennemyIndex];
 	}
 
 	/**
@@ -296,31 +517,31 @@ public class World {
 	public void randomReward(){
 		boolean hasPicked = false;
 		while(!hasPicked) {
-			Random rn = new Random();
-			int lottery = rn.nextInt(4);
+			int lottery = random.nextInt(4);
 			switch (lottery) {
 				case 0:
 					DummyGun weap = new DummyGun(); //todo:change to a new weapon
 					if (!player.getWeaponControl().hasWeapon(weap)) {
 						hasPicked = true;
 						player.getEngine().setWeapon(weap);
-						StdDraw.text(0.8,0.1,"You got a new Weapon !");
+						rewardMessage = 1;
 					}
 					break;
 				case 1:
 					player.getWeaponControl().addMissile();
-					StdDraw.text(0.8,0.1,"You got a new Missile !");
+					rewardMessage = 2;
 					hasPicked = true;
 					break;
 				case 2:
 					CrewMember newGuy = new CrewMember("John Doe");
-					StdDraw.text(0.8,0.1,"You got a new Crew member !");
+					rewardMessage = 3;
 					player.addCrewMember(newGuy);
 					hasPicked = true;
 					break;
 				default:
-					lottery = rn.nextInt(5)+1;
+					lottery = random.nextInt(5)+1;
 					player.repairHull(lottery);
+					rewardMessage = 0;
 					hasPicked = true;
 					break;
 
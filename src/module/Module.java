@@ -1,6 +1,8 @@
 package module;
 import display.StdDraw;
 import display.Vector2;
+import main.Log;
+import main.Snapshot;
 import ship.Tile;
 
 /**
@@ -30,6 +32,7 @@ public abstract class Module extends Tile {
 	protected 	boolean 			isActive;			//weather the module is active or not.
 	protected 	Double 				deactivationTime;   //the time it'll be deactivated.
 	protected 	Double				timeSinceDeactivation;//the time gone since it was deactivated.
+	protected	int					hudVersion;			// Incremented each time the HUD of the module changes
 	
 	/**
 	 * Construct a module owned by the player or the opponent.
@@ -53,6 +56,7 @@ public abstract class Module extends Tile {
 	public boolean addEnergy() {
 		if (allocatedEnergy < currentLevel - amountDamage && isActive) {
 			++allocatedEnergy;
+			hudVersion++;
 			return true;
 		}
 		return false;
@@ -65,6 +69,7 @@ public abstract class Module extends Tile {
 	public boolean removeEnergy() {
 		if (allocatedEnergy > 0) {
 			--allocatedEnergy;
+			hudVersion++;
 			return true;
 		}
 		return false;
@@ -103,6 +108,15 @@ public abstract class Module extends Tile {
 				StdDraw.rectangle(x, (y+0.01)+(i*0.015), 0.015, 0.005);
 	}
 
+	/**
+	 * Gives how many times the HUD of the module changed, so the ship
+	 * can keep the drawing of the HUDs until one of them changes.
+	 * @return the version of the HUD
+	 */
+	public int getHudVersion() {
+		return hudVersion;
+	}
+
 	/**
 	 * Gives the name of the module.
 	 * @return name of the module
@@ -117,11 +131,12 @@ public abstract class Module extends Tile {
 	 */
 	public void damage(int dmg) {
 		this.amountDamage = Math.min(currentLevel,this.amountDamage+dmg);
+		hudVersion++;
 		while(this.allocatedEnergy > this.getUsableEnergy()) {
 			this.removeEnergy();
 		}
 		if(this.getName() != null) {
-			System.out.println("The " +this.getName()+ " was hit !");
+			Log.info("The " +this.getName()+ " was hit !");
 		}
 	}
 
@@ -134,8 +149,9 @@ public abstract class Module extends Tile {
 		if(this.timeRepaired >= (2.0 / ((double) this.nbCrewMembers()))) {
 			this.amountDamage--;
 			this.timeRepaired = 0.0;
+			hudVersion++;
 			if(this.getName() != null) {
-				System.out.println(this.getName() + " was repaired by 1 !");
+				Log.info(this.getName() + " was repaired by 1 !");
 			}
 		}
 	}
@@ -172,7 +188,45 @@ public abstract class Module extends Tile {
 	 * levels up by one.
 	 */
 	public void levelUp() {
-		if (this.getCurrentLevel() < this.maxLevel) this.currentLevel++;
+		if (this.getCurrentLevel() < this.maxLevel) {
+			this.currentLevel++;
+			hudVersion++;
+		}
+	}
+
+	/**
+	 * Writes the state of the module in the snapshot.
+	 * @param s the snapshot to write in
+	 */
+	@Override
+	public void save(Snapshot s) {
+		super.save(s);
+		s.putInt(currentLevel);
+		s.putInt(allocatedEnergy);
+		s.putInt(amountDamage);
+		s.putBoolean(isActive);
+		s.putDouble(timeRepaired);
+		s.putDouble(deactivationTime == null ? Double.NaN : deactivationTime); // null until deactivated
+		s.putDouble(timeSinceDeactivation == null ? Double.NaN : timeSinceDeactivation);
+	}
+
+	/**
+	 * Reads the state of the module from the snapshot.
+	 * @param s the snapshot to read from
+	 */
+	@Override
+	public void restore(Snapshot s) {
+		hudVersion++;
+		super.restore(s);
+		currentLevel = s.getInt();
+		allocatedEnergy = s.getInt();
+		amountDamage = s.getInt();
+		isActive = s.getBoolean();
+		timeRepaired = s.getDouble();
+		double d = s.getDouble();
+		deactivationTime = Double.isNaN(d) ? null : d;
+		d = s.getDouble();
+		timeSinceDeactivation = Double.isNaN(d) ? null : d;
 	}
 
 	/////////////
@@ -37,6 +37,7 @@ public class Reactor extends Module {
 	 */
 	public void increaseEnergy(int power){
 		this.allocatedEnergy = Math.min(this.allocatedEnergy + power, currentLevel);
+		hudVersion++;
 	}
 
 	/**
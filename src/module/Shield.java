@@ -2,6 +2,7 @@ package module;
 
 import display.StdDraw;
 import display.Vector2;
+import main.Snapshot;
 
 /**
  * A shield is a circle protecting the ship from incoming shots.
@@ -73,16 +74,32 @@ public class Shield {
     }
 
     /**
-     * Checks if a given position is in the radius of the shield
-     * @param pos the position to check
-     * @return weather or not the projectile is in radius.
+     * Checks whether a projectile moving along the segment from (x0, y0)
+     * to (x1, y1) enters the shield, however fast it moves.
+     * A projectile already inside the shield does not hit it.
+     * @param x0 the X position at the start of the move
+     * @param y0 the Y position at the start of the move
+     * @param x1 the X position at the end of the move
+     * @param y1 the Y position at the end of the move
+     * @return the time of impact along the segment, from 0 to 1, or -1 if the shield is not hit
      */
-    public boolean isInRadius(Vector2<Double> pos) {
-        Double distance = Math.sqrt( //Pythagorean theorem
-                ((Math.abs(pos.getX()-this.pos.getX()))*(Math.abs(pos.getX()-this.pos.getX())))
-                        + ((Math.abs(pos.getY()-this.pos.getY()))*(Math.abs(pos.getY()-this.pos.getY()))));
-        Double margin = radius - 0.007; //margin of error, to prevent fast projectile to go through shields.
-        return (distance <= radius && distance >= margin);
+    public double intersect(double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double fx = x0 - this.pos.getX();
+        double fy = y0 - this.pos.getY();
+        double c = fx*fx + fy*fy - radius*radius;
+        if (c < 0) //already inside
+            return -1;
+        double a = dx*dx + dy*dy;
+        double b = fx*dx + fy*dy;
+        if (a == 0 || b >= 0) //not moving, or moving away from the center
+            return -1;
+        double discriminant = b*b - a*c;
+        if (discriminant < 0)
+            return -1;
+        double t = (-b - Math.sqrt(discriminant)) / a;
+        return t <= 1 ? t : -1;
     }
 
     /**
@@ -111,6 +128,30 @@ public class Shield {
 
     public boolean isActive() {return this.isActive;}
 
+    /**
+     * Writes the state of the shield in the snapshot.
+     * @param s the snapshot to write in
+     */
+    public void save(Snapshot s) {
+        s.putDouble(radius);
+        s.putBoolean(isUpgraded);
+        s.putBoolean(isActive);
+        s.putDouble(timeSinceDeactivated);
+        s.putDouble(ionTime);
+    }
+
+    /**
+     * Reads the state of the shield from the snapshot.
+     * @param s the snapshot to read from
+     */
+    public void restore(Snapshot s) {
+        radius = s.getDouble();
+        isUpgraded = s.getBoolean();
+        isActive = s.getBoolean();
+        timeSinceDeactivated = s.getDouble();
+        ionTime = s.getDouble();
+    }
+
     /**
      * checks if the shield has been recharged enough, depending on weather it ha been upgraded or not
      * If it has been deactivated by Ion for less than its normal time,
@@ -2,6 +2,7 @@ package module;
 
 import display.StdDraw;
 import display.Vector2;
+import main.Snapshot;
 
 import java.util.ArrayList;
 
@@ -38,6 +39,7 @@ public class ShieldModule extends Module{
         if (allocatedEnergy < currentLevel - amountDamage && isActive) {
             int currentEnergy = this.getUsableEnergy();
             ++allocatedEnergy;
+            hudVersion++;
             if(currentEnergy != this.getUsableEnergy()) {
                 if (this.allocatedEnergy % 2 == 1) addShield();
                 else this.shields.get(this.shields.size() - 1).upgrade();
@@ -57,6 +59,7 @@ public class ShieldModule extends Module{
         if (allocatedEnergy > 0) {
             int currentEnergy = this.getUsableEnergy();
             --allocatedEnergy;
+            hudVersion++;
             if(currentEnergy != this.getUsableEnergy()) {
                 if (this.allocatedEnergy % 2 == 0) removeShield();
                 else this.shields.get(this.shields.size() - 1).downgrade();
@@ -131,6 +134,35 @@ public class ShieldModule extends Module{
         return -1;
     }
 
+    /**
+     * Writes the state of the module and of its shields in the snapshot.
+     * @param s the snapshot to write in
+     */
+    @Override
+    public void save(Snapshot s) {
+        super.save(s);
+        s.putInt(shields.size());
+        for (Shield shield : shields)
+            shield.save(s);
+    }
+
+    /**
+     * Reads the state of the module and of its shields from the snapshot.
+     * The shields are added or removed to match the snapshot.
+     * @param s the snapshot to read from
+     */
+    @Override
+    public void restore(Snapshot s) {
+        super.restore(s);
+        int n = s.getInt();
+        while (shields.size() > n)
+            removeShield();
+        while (shields.size() < n)
+            addShield();
+        for (Shield shield : shields)
+            shield.restore(s);
+    }
+
     /**
      * recharges Shields by the given time
      * Boosted by crewmembers.
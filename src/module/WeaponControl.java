@@ -2,9 +2,12 @@ package module;
 import display.Button;
 import display.StdDraw;
 import display.Vector2;
+import main.Snapshot;
 import ship.Tile;
 import weapon.*;
 
+import java.util.function.IntConsumer;
+
 /**
  * A WeaponControl is a Module which handles weapons energy and activation.
  * This module has a specific HUD to display the weapons along with buttons
@@ -14,6 +17,8 @@ public class WeaponControl extends Module {
 	
 	private Weapon[] 		weapons;	// The weapon slots
 	private WeaponButton[] 	weaponBtns;	// The button linked to the weapon slot
+	private IntConsumer		onLeftClick = this::activeWeapon;	// The action of a left click on a button
+	private IntConsumer		onRightClick = this::deactiveWeapon;// The action of a right click on a button
 	
 	/**
 	 * A WeaponButton is an implementation of a Button
@@ -31,12 +36,12 @@ public class WeaponControl extends Module {
 
 		@Override
 		protected void onLeftClick() {
-			activeWeapon(weaponIndex);
+			onLeftClick.accept(weaponIndex);
 		}
 
 		@Override
 		protected void onRightClick() {
-			deactiveWeapon(weaponIndex);
+			onRightClick.accept(weaponIndex);
 		}
 
 		@Override
@@ -113,6 +118,17 @@ public class WeaponControl extends Module {
 		weapons[weapon].deactive();
 	}
 	
+	/**
+	 * Sets the actions of the weapon buttons, which activate and deactivate
+	 * the weapon by default. It lets the world know about the clicks.
+	 * @param onLeftClick the action of a left click, given the index of the weapon
+	 * @param onRightClick the action of a right click, given the index of the weapon
+	 */
+	public void setButtonActions(IntConsumer onLeftClick, IntConsumer onRightClick) {
+		this.onLeftClick = onLeftClick;
+		this.onRightClick = onRightClick;
+	}
+
 	/**
 	 * Gives the weapon of the inventory
 	 * @param index location of the weapon in the inventory
@@ -140,8 +156,8 @@ public class WeaponControl extends Module {
 	}
 	
 	/**
-	 * Draws the weapon inventory and the weapon in it as well
-	 * as their charging time.
+	 * Draws the weapon inventory and the missiles left.
+	 * The weapons in it change with their charge, they are drawn by drawWeapons.
 	 */
 	@Override
 	public void drawHud() {
@@ -149,6 +165,21 @@ public class WeaponControl extends Module {
 		double x = hudPos.getX();
 		double y = hudPos.getY();
 		StdDraw.rectangle(x+0.05+(0.05*weapons.length), y+0.1, (0.05*weapons.length), 0.04);
+
+		StdDraw.setPenColor(StdDraw.MAGENTA);
+		for(int i = 0; i < this.getNbMissiles(); i++) { //draws the number of missiles left
+			StdDraw.filledEllipse(0.1+0.05*i, 0.85, 0.02,0.007);
+
+		}
+		StdDraw.setPenColor();
+	}
+
+	/**
+	 * Draws the weapons of the inventory along with their charging time.
+	 */
+	public void drawWeapons() {
+		double x = hudPos.getX();
+		double y = hudPos.getY();
 		for (int i = 0; i < weapons.length; i++) {
 			Weapon w = weapons[i];
 			if (w == null)
@@ -168,12 +199,6 @@ public class WeaponControl extends Module {
 			StdDraw.setPenColor(StdDraw.BLACK);
 			StdDraw.text(x+0.1+(0.1*i), y+0.1, w.getName());
 		}
-
-		StdDraw.setPenColor(StdDraw.MAGENTA);
-		for(int i = 0; i < this.getNbMissiles(); i++) { //draws the number of missiles left
-			StdDraw.filledEllipse(0.1+0.05*i, 0.85, 0.02,0.007);
-
-		}
 		StdDraw.setPenColor();
 	}
 	
@@ -182,11 +207,12 @@ public class WeaponControl extends Module {
 	 * @param weapon the weapon to shot
 	 * @param tile the tile to shot it from
 	 * @param dir the direction in which to shot it
-	 * @return the projectile created by the weapon
+	 * @param projectiles the store to add the projectile to
+	 * @return the slot of the projectile created by the weapon, or -1 if none was shot
 	 */
-	public Projectile shotWeapon(int weapon, Tile tile, Vector2<Double> dir) {
+	public int shotWeapon(int weapon, Tile tile, Vector2<Double> dir, ProjectileStore projectiles) {
 		if (weapons[weapon] == null || !weapons[weapon].isCharged()) {
-			return null;
+			return -1;
 		}
 		Vector2<Double> v = tile.getWeaponPosition();
 		weapons[weapon].resetCharge();
@@ -195,7 +221,8 @@ public class WeaponControl extends Module {
 		} else if(weapons[weapon] instanceof IonCannon) { //on calcule la puissance du laser si c'est l'arme tirée
 			((IonCannon)weapons[weapon]).setDeactivationTime(Math.min(this.getUsableEnergy(),((IonCannon)weapons[weapon]).getMaxDeactivationTime()));
 		}
-		return weapons[weapon].shot(new Vector2<Double>(v.getX(), v.getY()), dir );
+		hudVersion++;	// The missiles left may have changed
+		return weapons[weapon].shot(projectiles, v, dir);
 	}
 	
 	/**
@@ -206,6 +233,7 @@ public class WeaponControl extends Module {
 	public boolean removeEnergy() {
 		if (allocatedEnergy > 0) {
 			--allocatedEnergy;
+			hudVersion++;
 			int energy = 0;
 			for (Weapon w : weapons)
 				if (w != null)
@@ -222,6 +250,42 @@ public class WeaponControl extends Module {
 		return false;
 	}
 
+	/**
+	 * Writes the state of the module and of its weapons in the snapshot.
+	 * @param s the snapshot to write in
+	 */
+	@Override
+	public void save(Snapshot s) {
+		super.save(s);
+		for (Weapon w : weapons)
+			if (w != null)
+				w.save(s);
+	}
+
+	/**
+	 * Reads the state of the module and of its weapons from the snapshot.
+	 * @param s the snapshot to read from
+	 */
+	@Override
+	public void restore(Snapshot s) {
+		super.restore(s);
+		for (Weapon w : weapons)
+			if (w != null)
+				w.restore(s);
+	}
+
+	/**
+	 * Gives the slot of a weapon of the inventory.
+	 * @param w the weapon
+	 * @return the slot of the weapon, or -1 if it is not in the inventory
+	 */
+	public int indexOf(Weapon w) {
+		for (int i = 0; i < weapons.length; i++)
+			if (weapons[i] == w)
+				return i;
+		return -1;
+	}
+
 	/**
 	 * checks if a weapon is already possesed.
 	 * @param w the weapon to test
@@ -254,6 +318,7 @@ public class WeaponControl extends Module {
 		for(Weapon weap : weapons) {
 			if(weap instanceof MissileLauncher) {
 				((MissileLauncher) weap).addMissile();
+				hudVersion++;
 			}
 		}
 	}
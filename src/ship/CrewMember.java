@@ -49,6 +49,14 @@ public class CrewMember {
 		isSelected = false;
 	}
 	
+	/**
+	 * Checks whether the crew member is selected.
+	 * @return whether he/she is selected
+	 */
+	public boolean isSelected() {
+		return isSelected;
+	}
+
 	/**
 	 * Gives the name of the crew member.
 	 * @return the name of the crew member.
@@ -3,14 +3,17 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Random;
+import java.util.List;
 
+import display.Layer;
 import display.StdDraw;
 import display.Vector2;
-import main.World;
+import main.Log;
+import main.Rng;
+import main.Snapshot;
 import module.*;
 import module.Module;
-import weapon.Projectile;
+import weapon.ProjectileStore;
 import weapon.Shotgun;
 import weapon.Weapon;
 
@@ -29,15 +32,23 @@ public abstract class Ship {
 	protected Engine					engine;			// Engine system
 	protected ShieldModule shield;			// Shield system
 
-	protected Collection<CrewMember> 	crew;			// The crew members in the ship
+	protected List<CrewMember>		 	crew;			// The crew members in the ship
 	protected Collection<Tile>			layout;			// The layout of the ship
+	protected TileGrid					grid;			// The layout indexed by position, built when needed
 	protected boolean					isPlayer;		// Whether this ship is owned by the player
 	protected Module[]					modules;		// The modules on the ship
-	protected Collection<Projectile>	projectiles;	// The projectiles shot by the ship
+	protected ProjectileStore			projectiles;	// The projectiles shot by the ship
 	protected Tile						target;			// The targeted tile of the enemy ship
 	protected CrewMember				selectedMember; // The currently selected crew member
 
 	protected Tile 						selectedTile;	// The Tile where the currently selected crew memebr is
+	protected Rng						random;			// The random stream of the ship
+	private Layer						tiles;			// The drawing of the tiles, created when first drawn
+	private long						tilesVersion = -1;	// The sum of the versions of the tiles drawn in it
+	private CrewMember					tilesSelection;	// The crew member selected when it was drawn
+	private Layer						hud;			// The drawing of the HUD, created when first drawn
+	private long						hudVersion;		// Incremented each time the hull changes
+	private long						drawnHudVersion = -1;	// The versions of the hull and modules drawn in it
 	protected DecimalFormat 			df = new DecimalFormat("#.##"); // To round integer to the right format
 
 	/**
@@ -49,7 +60,7 @@ public abstract class Ship {
 		this.isPlayer = isPlayer;
 		this.position = position;
 		crew = new ArrayList<CrewMember>();
-		projectiles = new ArrayList<Projectile>();
+		projectiles = new ProjectileStore();
 		layout = new ArrayList<Tile>();
 	}
 	
@@ -61,8 +72,7 @@ public abstract class Ship {
 	 * @param player the enemy of the AI
 	 */
 	public void ai(Ship player) {
-		Random r = new Random();
-		boolean buffer = r.nextBoolean();
+		boolean buffer = random.nextBoolean();
 		if (isPlayer)
 
 			if (shield.getAllocatedEnergy() == 0){
@@ -77,7 +87,7 @@ public abstract class Ship {
 			}
 
 			if (weaponControl.getAllocatedEnergy() > 0 && weaponControl.getWeapon(0).isCharged()){
-				if (r.nextInt(100) > 98){
+				if (random.nextInt(100) > 98){
 					if (buffer){
 						aimLeft(player);
 						shotWeapon(0);
@@ -112,30 +122,59 @@ public abstract class Ship {
 	
 	/**
 	 * Draws the ship and all its components.
+	 * @param alpha how far between the last two steps to draw the projectiles, from 0 to 1
 	 */
-	public void draw() {
+	public void draw(double alpha) {
 		drawTiles();
 		shield.drawShields();
-		for (Projectile p : projectiles)
-			p.draw();
+		projectiles.draw(alpha);
 	}
 
 	/**
-	 * Draw the tiles of the ship.
+	 * Draw the tiles of the ship. They are drawn once in a layer, drawn again
+	 * only when a tile, its target mark or its crew changed, or the crew
+	 * member selected changed.
 	 */
 	private void drawTiles() {
+		long version = 0;
 		for (Tile t : layout)
-			t.draw();
+			version += t.getVersion();
+		if (tiles == null)
+			tiles = new Layer();
+		if (!tiles.isValid() || version != tilesVersion || selectedMember != tilesSelection) {
+			StdDraw.beginLayer(tiles);
+			for (Tile t : layout)
+				t.draw();
+			StdDraw.endLayer();
+			tilesVersion = version;
+			tilesSelection = selectedMember;
+		}
+		StdDraw.layer(tiles);
 	}
 
 	/**
-	 * Draws the HUD of the ship.
+	 * Draws the HUD of the ship. It is drawn once in a layer, drawn again
+	 * only when the hull or a module changed. The weapons of the player,
+	 * which change with their charge, are drawn over it.
 	 */
 	public void drawHUD() {
+		long version = hudVersion;
+		for (Module m : modules)
+			version += m.getHudVersion();
+		if (hud == null)
+			hud = new Layer();
+		if (!hud.isValid() || version != drawnHudVersion) {
+			StdDraw.beginLayer(hud);
+			if (isPlayer)
+				drawPlayerHUD();
+			else
+				drawOpponentHUD();
+			StdDraw.endLayer();
+			drawnHudVersion = version;
+		}
+		StdDraw.layer(hud);
 		if (isPlayer)
-			drawPlayerHUD();
-		else
-			drawOpponentHUD();
+			weaponControl.drawWeapons();
 	}
 	
 	/**
@@ -228,6 +267,18 @@ public abstract class Ship {
 	 */
 	protected void addTile(Tile t) {
 		layout.add(t);
+		grid = null;
+		tilesVersion = -1;
+	}
+
+	/**
+	 * Gives the layout of the ship indexed by position.
+	 * @return the grid of the tiles
+	 */
+	public TileGrid getTileGrid() {
+		if (grid == null)
+			grid = new TileGrid(layout);
+		return grid;
 	}
 	
 	/**
@@ -347,14 +398,13 @@ public abstract class Ship {
 	 * @param weapon the weapon to shot
 	 */
 	public void shotWeapon(int weapon) {
-		Projectile p = weaponControl.shotWeapon(weapon, getWeaponTile(weaponControl.getWeapon(weapon)),
+		weaponControl.shotWeapon(weapon, getWeaponTile(weaponControl.getWeapon(weapon)),
 			new Vector2<Double>(
 				target.getCenterPosition().getX() -
 						getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getX(),
 				target.getCenterPosition().getY() -
-						getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getY()));
-		if (p != null)
-			projectiles.add(p);
+						getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getY()),
+			projectiles);
 	}
 
 	/**
@@ -363,25 +413,22 @@ public abstract class Ship {
 	 */
 
 	public void missShotWeapon(int weapon){
-		Random r = new Random();
-		if (r.nextBoolean()){
-			Projectile p = weaponControl.shotWeapon(weapon, getWeaponTile(weaponControl.getWeapon(weapon)),
+		if (random.nextBoolean()){
+			weaponControl.shotWeapon(weapon, getWeaponTile(weaponControl.getWeapon(weapon)),
 					new Vector2<Double>(
 							target.getCenterPosition().getX() -
 									getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getX() * 0.5,
 							target.getCenterPosition().getY() -
-									getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getY() * 0.5));
-			if (p != null)
-				projectiles.add(p);
+									getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getY() * 0.5),
+					projectiles);
 		} else {
-			Projectile p = weaponControl.shotWeapon(weapon, getWeaponTile(weaponControl.getWeapon(weapon)),
+			weaponControl.shotWeapon(weapon, getWeaponTile(weaponControl.getWeapon(weapon)),
 					new Vector2<Double>(
 							target.getCenterPosition().getX() -
 									getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getX() * 2,
 							target.getCenterPosition().getY() -
-									getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getY() * 2));
-			if (p != null)
-				projectiles.add(p);
+									getWeaponTile(weaponControl.getWeapon(weapon)).getWeaponPosition().getY() * 2),
+					projectiles);
 		}
 	}
 	/**
@@ -403,8 +450,22 @@ public abstract class Ship {
 	 */
 
 	public boolean isWeaponShotCorrectly(Ship opponent){
-		Random r = new Random();
-		return r.nextInt(100) >= opponent.getEngine().getDodge();
+		return random.nextInt(100) >= opponent.getEngine().getDodge();
+	}
+
+	/**
+	 * Fires a weapon at the tile aimed, which the opponent may dodge.
+	 * Nothing is fired while no tile is aimed.
+	 * @param weapon the weapon to fire
+	 * @param opponent the ship aimed at
+	 */
+	public void fireWeapon(int weapon, Ship opponent) {
+		if (target == null || !target.isAimed())
+			return;
+		if (isWeaponShotCorrectly(opponent))
+			shotWeapon(weapon);
+		else
+			missShotWeapon(weapon);
 	}
 	// Projectile Methods
 	
@@ -414,27 +475,26 @@ public abstract class Ship {
 	 * @param elapsedTime the time elapsed since the last call
 	 */
 	private void processProjectiles(double elapsedTime) {
-		for (Projectile p : projectiles){
-			p.step(elapsedTime);
-		}
+		projectiles.step(elapsedTime);
 	}
 	
 	/**
 	 * Gives the projectiles shot by the ship.
-	 * @return A collection of projectiles
+	 * @return the store of the projectiles
 	 */
-	public Collection<Projectile> getProjectiles(){
+	public ProjectileStore getProjectiles(){
 		return projectiles;
 	}
 
 	/**
 	 * Applies the damage a projectile did.
-	 * @param p the projectile to process
+	 * @param damage the damage of the projectile
 	 */
-	public void applyDamage(Projectile p) {
-		if (this.currentHull - p.getDamage() < 0) this.currentHull = 0;
-		else this.currentHull -= p.getDamage();
-		System.out.println("You took "+ p.getDamage() +" damage.");
+	public void applyDamage(int damage) {
+		if (this.currentHull - damage < 0) this.currentHull = 0;
+		else this.currentHull -= damage;
+		hudVersion++;
+		Log.info("You took "+ damage +" damage.");
 	}
 	
 	// Aiming Methods
@@ -515,6 +575,162 @@ public abstract class Ship {
 		}
 	}
 
+	// Snapshot Methods
+
+	/**
+	 * Writes the state of the ship in the snapshot: the hull, the tiles
+	 * and modules, the weapons, the crew, the projectiles and the random stream.
+	 * The target is written as its index in the layout of the opponent.
+	 * @param s the snapshot to write in
+	 * @param opponent the ship aimed at
+	 */
+	public void save(Snapshot s, Ship opponent) {
+		s.putInt(currentHull);
+		s.putLong(random.getState());
+		s.putLong(random.getGamma());
+		s.putInt(opponent.indexOf(target));
+		for (Tile t : layout)
+			t.save(s);
+		for (Tile t : layout)
+			saveWeapon(s, t.getWeapon());
+
+		// The crew members and the tiles they are on
+		s.putInt(crew.size());
+		for (CrewMember m : crew)
+			s.putString(m.getName());
+		for (CrewMember m : crew)
+			s.putBoolean(m.isSelected());
+		s.putInt(crew.indexOf(selectedMember));
+		s.putInt(indexOf(selectedTile));
+		for (Tile t : layout) {
+			s.putInt(t.nbCrewMembers());
+			for (int i = 0; i < t.nbCrewMembers(); i++)
+				s.putInt(crew.indexOf(t.getCrewMember(i)));
+		}
+
+		projectiles.save(s);
+	}
+
+	/**
+	 * Reads the state of the ship from the snapshot.
+	 * The crew members and the weapons which are not the ones of the
+	 * ship are created again from their name and their type.
+	 * @param s the snapshot to read from
+	 * @param opponent the ship aimed at
+	 */
+	public void restore(Snapshot s, Ship opponent) {
+		currentHull = s.getInt();
+		hudVersion++;
+		random.setState(s.getLong(), s.getLong());
+		target = opponent.getTile(s.getInt());
+		for (Tile t : layout)
+			t.restore(s);
+		for (Tile t : layout)
+			t.restoreWeapon(restoreWeapon(s, t.getWeapon()));
+
+		int n = s.getInt();
+		while (crew.size() > n)
+			crew.remove(crew.size() - 1);
+		for (int i = 0; i < n; i++) {
+			String name = s.getString();
+			if (i == crew.size())
+				crew.add(new CrewMember(name));
+			else if (!crew.get(i).getName().equals(name))
+				crew.set(i, new CrewMember(name));
+		}
+		for (CrewMember m : crew)
+			if (s.getBoolean())
+				m.select();
+			else
+				m.unselect();
+		int member = s.getInt();
+		selectedMember = member == -1 ? null : crew.get(member);
+		selectedTile = getTile(s.getInt());
+		for (Tile t : layout) {
+			t.removeCrewMember();
+			int amount = s.getInt();
+			for (int i = 0; i < amount; i++)
+				t.setCrewMember(crew.get(s.getInt()));
+		}
+
+		projectiles.restore(s);
+	}
+
+	/**
+	 * Writes the weapon of a tile: its slot in the weapon control, or
+	 * its type and its state when it is not in the inventory.
+	 * @param s the snapshot to write in
+	 * @param w the weapon, or null
+	 */
+	private void saveWeapon(Snapshot s, Weapon w) {
+		int slot = w == null ? -1 : weaponControl.indexOf(w);
+		s.putInt(slot);
+		if (slot != -1)
+			return;
+		s.putInt(w == null ? -1 : Weapon.typeOf(w));
+		if (w != null)
+			w.save(s);
+	}
+
+	/**
+	 * Reads the weapon of a tile written by saveWeapon. A weapon outside
+	 * the inventory is kept if it has the type read, or created again.
+	 * @param s the snapshot to read from
+	 * @param current the weapon of the tile
+	 * @return the weapon of the tile, or null
+	 */
+	private Weapon restoreWeapon(Snapshot s, Weapon current) {
+		int slot = s.getInt();
+		if (slot != -1)
+			return weaponControl.getWeapon(slot);
+		int type = s.getInt();
+		if (type == -1)
+			return null;
+		Weapon w = current;
+		if (w == null || weaponControl.indexOf(w) != -1 || Weapon.typeOf(w) != type)
+			w = Weapon.create(type);
+		w.restore(s);
+		return w;
+	}
+
+	/**
+	 * Gives the index of a tile in the layout.
+	 * @param t the tile
+	 * @return the index of the tile, or -1 if it is not in the layout
+	 */
+	private int indexOf(Tile t) {
+		int i = 0;
+		for (Tile u : layout) {
+			if (u == t)
+				return i;
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Gives the tile at an index of the layout.
+	 * @param index the index of the tile, -1 for none
+	 * @return the tile, or null if the index is -1
+	 */
+	private Tile getTile(int index) {
+		if (index == -1)
+			return null;
+		int i = 0;
+		for (Tile t : layout)
+			if (i++ == index)
+				return t;
+		return null;
+	}
+
+	/**
+	 * Sets the random stream used by the ship.
+	 * @param random the random stream
+	 */
+	public void setRandom(Rng random) {
+		this.random = random;
+	}
+
 	public Collection<Tile> getLayout() {
 		return layout;
 	}
@@ -535,10 +751,6 @@ public abstract class Ship {
 		return engine;
 	}
 
-	public void setProjectiles(Collection<Projectile> projectiles) {
-		this.projectiles = projectiles;
-	}
-
 	public ShieldModule getShield() {
 		return shield;
 	}
@@ -565,5 +777,6 @@ public abstract class Ship {
 	 */
 	public void repairHull(int repair) {
 		this.currentHull = Math.min(currentHull+repair,totalHull);
+		hudVersion++;
 	}
 }
@@ -1,6 +1,7 @@
 package ship;
 import display.StdDraw;
 import display.Vector2;
+import main.Snapshot;
 import weapon.Weapon;
 
 import java.util.ArrayList;
@@ -17,6 +18,7 @@ public class Tile {
 	private 		boolean 		isAimed;	// Whether the tile aimed at
 	private 		boolean 		isPlayer;	// Whether the tile is owned by the player
 	protected final Vector2<Double> tilePos;	// The position of the tile
+	private			int				version;	// Incremented each time the drawing of the tile changes
 	
 	/**
 	 * Creates a tile for the player of the opponent
@@ -47,6 +49,7 @@ public class Tile {
             if (c == member) return;
         }
         members.add(member);
+        version++;
 	}
 	
 	/**
@@ -131,8 +134,10 @@ public class Tile {
 	 * @param w the weapon to assign
 	 */
 	public void setWeapon(Weapon w) {
-		if (weapon == null)
+		if (weapon == null) {
 			weapon = w;
+			version++;
+		}
 	}
 
 	/**
@@ -185,11 +190,29 @@ public class Tile {
 	public Vector2<Double> getCenterPosition() {
 		return new Vector2<Double>(tilePos.getX()-0.01, tilePos.getY()-0.01);
 	}
+
+	/**
+	 * Gives the X center position of the tile.
+	 * @return the X position
+	 */
+	public double getCenterX() {
+		return tilePos.getX()-0.01;
+	}
+
+	/**
+	 * Gives the Y center position of the tile.
+	 * @return the Y position
+	 */
+	public double getCenterY() {
+		return tilePos.getY()-0.01;
+	}
 	
 	/**
 	 * Marks the tile as targeted.
 	 */
 	public void markTarget() {
+		if (!isAimed)
+			version++;
 		isAimed = true;
 	}
 	
@@ -197,6 +220,8 @@ public class Tile {
 	 * Unmarks the tile as targeted.
 	 */
 	public void unmarkTarget() {
+		if (isAimed)
+			version++;
 		isAimed = false;
 	}
 	
@@ -216,6 +241,8 @@ public class Tile {
 	 * Removes the crew member of the tile.
 	 */
 	public void removeCrewMember() {
+	    if (!members.isEmpty())
+	        version++;
 	    members.clear();
 	}
 
@@ -223,6 +250,52 @@ public class Tile {
         return isAimed;
     }
 
+	/**
+	 * Gives the crew member of the tile.
+	 * @param i -th crew member of the tile
+	 * @return the crew member
+	 */
+	CrewMember getCrewMember(int i) {
+		return members.get(i);
+	}
+
+	/**
+	 * Gives how many times the drawing of the tile changed, so the
+	 * ship can keep the drawing of its tiles until one of them changes.
+	 * @return the version of the tile
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Writes the state of the tile in the snapshot.
+	 * The crew members and the weapon are written by the ship.
+	 * @param s the snapshot to write in
+	 */
+	public void save(Snapshot s) {
+		s.putBoolean(isAimed);
+	}
+
+	/**
+	 * Reads the state of the tile from the snapshot.
+	 * @param s the snapshot to read from
+	 */
+	public void restore(Snapshot s) {
+		version++;
+		isAimed = s.getBoolean();
+	}
+
+	/**
+	 * Puts back the weapon of the tile read by the ship from a snapshot.
+	 * @param w the weapon, or null if the tile has none
+	 */
+	void restoreWeapon(Weapon w) {
+		if (weapon != w)
+			version++;
+		weapon = w;
+	}
+
 	/**
 	 * Give the amount of crew member
 	 * @return How many crew member there are
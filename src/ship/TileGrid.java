@@ -0,0 +1,215 @@
+package ship;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A tile grid indexes the layout of a ship into a fixed grid of cells,
+ * so the tile hit by a projectile is found by looking at the tiles of
+ * a single cell instead of every tile of the ship.
+ *
+ * A tile is hit when the projectile is within half a tile of its center.
+ * A tile is listed in every cell its hit box overlaps, in the order of
+ * the layout, so the tile found is the same as when testing the whole
+ * layout in order.
+ *
+ * A projectile moving fast can be tested along its whole move with sweep,
+ * which finds the first tile it crosses instead of the tile it ends in.
+ */
+public class TileGrid {
+
+	private static final double CELL = 0.02;	// The size of a cell, the size of a tile
+	private static final double HALF = 0.01;	// Half the size of the hit box of a tile
+
+	private final double	minX;		// X position of the left of the grid
+	private final double	minY;		// Y position of the bottom of the grid
+	private final int		columns;	// The amount of columns of cells
+	private final int		rows;		// The amount of rows of cells
+	private final Tile[][]	cells;		// The tiles overlapping each cell
+	private final double[][] centers;	// The X and Y center of these tiles
+	private final int[][]	order;		// The index in the layout of these tiles
+
+	/**
+	 * Creates the grid of a layout.
+	 * @param layout the tiles of the ship
+	 */
+	public TileGrid(Collection<Tile> layout) {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (Tile t : layout) {
+			minX = Math.min(minX, t.getCenterX() - HALF);
+			minY = Math.min(minY, t.getCenterY() - HALF);
+			maxX = Math.max(maxX, t.getCenterX() + HALF);
+			maxY = Math.max(maxY, t.getCenterY() + HALF);
+		}
+		if (layout.isEmpty()) {
+			minX = minY = maxX = maxY = 0;
+		}
+		this.minX = minX;
+		this.minY = minY;
+		columns = (int) ((maxX - minX) / CELL) + 1;
+		rows = (int) ((maxY - minY) / CELL) + 1;
+
+		ArrayList<ArrayList<Tile>> lists = new ArrayList<ArrayList<Tile>>(columns * rows);
+		for (int i = 0; i < columns * rows; i++)
+			lists.add(new ArrayList<Tile>(1));
+		ArrayList<Tile> tiles = new ArrayList<Tile>(layout);
+		for (Tile t : tiles) {
+			int c0 = column(t.getCenterX() - HALF), c1 = column(t.getCenterX() + HALF);
+			int r0 = row(t.getCenterY() - HALF), r1 = row(t.getCenterY() + HALF);
+			for (int c = c0; c <= c1; c++)
+				for (int r = r0; r <= r1; r++)
+					lists.get(r * columns + c).add(t);
+		}
+
+		cells = new Tile[columns * rows][];
+		centers = new double[columns * rows][];
+		order = new int[columns * rows][];
+		for (int i = 0; i < cells.length; i++) {
+			ArrayList<Tile> list = lists.get(i);
+			cells[i] = list.toArray(new Tile[list.size()]);
+			centers[i] = new double[2 * list.size()];
+			order[i] = new int[list.size()];
+			for (int j = 0; j < list.size(); j++) {
+				centers[i][2*j] = list.get(j).getCenterX();
+				centers[i][2*j+1] = list.get(j).getCenterY();
+				order[i][j] = tiles.indexOf(list.get(j));
+			}
+		}
+	}
+
+	/**
+	 * Gives the column of the cell at the X position, clamped to the grid.
+	 * @param x the X position
+	 * @return the column
+	 */
+	private int column(double x) {
+		return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / CELL)));
+	}
+
+	/**
+	 * Gives the row of the cell at the Y position, clamped to the grid.
+	 * @param y the Y position
+	 * @return the row
+	 */
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / CELL)));
+	}
+
+	/**
+	 * Gives the tile hit at the provided position.
+	 * @param x the X position
+	 * @param y the Y position
+	 * @return the first tile of the layout hit, or null if there is none
+	 */
+	public Tile tileAt(double x, double y) {
+		if (x < minX || y < minY)
+			return null;
+		int c = (int) ((x - minX) / CELL);
+		int r = (int) ((y - minY) / CELL);
+		if (c >= columns || r >= rows)
+			return null;
+		int cell = r * columns + c;
+		Tile[] tiles = cells[cell];
+		double[] center = centers[cell];
+		for (int i = 0; i < tiles.length; i++) {
+			double cx = center[2*i];
+			double cy = center[2*i+1];
+			if (!(x < cx-HALF || x > cx+HALF || y < cy-HALF || y > cy+HALF))
+				return tiles[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Gives the first tile crossed by a projectile moving along the
+	 * segment from (x0, y0) to (x1, y1). Only the cells overlapping the
+	 * segment are tested. When two tiles are crossed at the same time,
+	 * the first one of the layout is given.
+	 * @param x0 the X position at the start of the move
+	 * @param y0 the Y position at the start of the move
+	 * @param x1 the X position at the end of the move
+	 * @param y1 the Y position at the end of the move
+	 * @return the first tile crossed, or null if there is none
+	 */
+	public Tile sweep(double x0, double y0, double x1, double y1) {
+		return sweep(x0, y0, x1, y1, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Gives the first tile crossed by a projectile moving along the
+	 * segment from (x0, y0) to (x1, y1) strictly before a time of the
+	 * move, such as the time it enters a shield. The tiles crossed at or
+	 * after that time are ignored, so the shield takes the hit.
+	 * @param x0 the X position at the start of the move
+	 * @param y0 the Y position at the start of the move
+	 * @param x1 the X position at the end of the move
+	 * @param y1 the Y position at the end of the move
+	 * @param before the time along the move, from 0 to 1, the tile must be crossed before
+	 * @return the first tile crossed before that time, or null if there is none
+	 */
+	public Tile sweep(double x0, double y0, double x1, double y1, double before) {
+		double left = Math.min(x0, x1), right = Math.max(x0, x1);
+		double bottom = Math.min(y0, y1), top = Math.max(y0, y1);
+		if (right < minX || top < minY || left > minX + columns * CELL || bottom > minY + rows * CELL)
+			return null;
+		int c0 = column(left), c1 = column(right);
+		int r0 = row(bottom), r1 = row(top);
+		double dx = x1 - x0;
+		double dy = y1 - y0;
+
+		Tile hit = null;
+		int hitOrder = Integer.MAX_VALUE;
+		double best = Double.POSITIVE_INFINITY;
+		for (int r = r0; r <= r1; r++)
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * columns + c;
+				Tile[] tiles = cells[cell];
+				double[] center = centers[cell];
+				for (int i = 0; i < tiles.length; i++) {
+					double t = enter(x0, y0, dx, dy, center[2*i], center[2*i+1]);
+					if (t < 0 || t >= before)
+						continue;
+					if (t < best || (t == best && order[cell][i] < hitOrder)) {
+						best = t;
+						hit = tiles[i];
+						hitOrder = order[cell][i];
+					}
+				}
+			}
+		return hit;
+	}
+
+	/**
+	 * Gives the time at which a segment enters the hit box of a tile,
+	 * using the slab method.
+	 * @param x0 the X position at the start of the segment
+	 * @param y0 the Y position at the start of the segment
+	 * @param dx the X length of the segment
+	 * @param dy the Y length of the segment
+	 * @param cx the X center of the tile
+	 * @param cy the Y center of the tile
+	 * @return the time of impact, from 0 to 1, or -1 if the segment misses the tile
+	 */
+	private static double enter(double x0, double y0, double dx, double dy, double cx, double cy) {
+		double tMin = 0, tMax = 1;
+		if (dx == 0) {
+			if (x0 < cx-HALF || x0 > cx+HALF)
+				return -1;
+		} else {
+			double t1 = (cx-HALF - x0) / dx;
+			double t2 = (cx+HALF - x0) / dx;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		}
+		if (dy == 0) {
+			if (y0 < cy-HALF || y0 > cy+HALF)
+				return -1;
+		} else {
+			double t1 = (cy-HALF - y0) / dy;
+			double t2 = (cy+HALF - y0) / dy;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+		}
+		return tMin <= tMax ? tMin : -1;
+	}
+}
@@ -1,6 +1,5 @@
 package weapon;
 
-import display.StdDraw;
 import display.Vector2;
 
 /**
@@ -8,23 +7,8 @@ import display.Vector2;
  */
 public class DummyGun extends Weapon {
 	
-	/**
-	 * A dummy projectile is an example of a projectile
-	 */
-	private class DummyGunProjectile extends Projectile {
+	private static final double SPEED = 0.2;	// The constant speed of the dummy projectiles
 
-		public DummyGunProjectile(Vector2<Double> pos, Vector2<Double> dir) {
-			super(0.01, 0.01);
-			this.x = pos.getX();
-			this.y = pos.getY();
-			this.cSpeed = 0.2;
-			this.xSpeed = dir.getX()*cSpeed;
-			this.ySpeed = dir.getY()*cSpeed;
-			this.color = StdDraw.LIGHT_GRAY;
-			this.damage = shotDamage;
-		}
-	}
-	
 	/**
 	 * Creates a dummy gun
 	 */
@@ -38,11 +22,12 @@ public class DummyGun extends Weapon {
 
 	/**
 	 * Shots a dummy projectile
-	 * @see weapon.Weapon#shot(display.Vector2, display.Vector2)
+	 * @see weapon.Weapon#shot(ProjectileStore, display.Vector2, display.Vector2)
 	 */
 	@Override
-	public Projectile shot(Vector2<Double> pos, Vector2<Double> dir) {
-		return new DummyGunProjectile(pos, dir);
+	public int shot(ProjectileStore projectiles, Vector2<Double> pos, Vector2<Double> dir) {
+		return projectiles.add(ProjectileStore.DUMMY, pos.getX(), pos.getY(),
+				dir.getX()*SPEED, dir.getY()*SPEED, shotDamage, 0);
 	}
 	
 
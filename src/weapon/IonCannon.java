@@ -1,36 +1,14 @@
 package weapon;
 
-import display.StdDraw;
 import display.Vector2;
+import main.Snapshot;
 
 /**
  * A dummy gun is an example of a gun which shots dummy pojectiles
  */
 public class IonCannon extends Weapon {
 
-    /**
-     * A dummy projectile is an example of a projectile
-     */
-    public class IonProjectile extends Projectile {
-
-        private Double time; //the time for which the ion will deactivate something
-
-        public IonProjectile(Vector2<Double> pos, Vector2<Double> dir, Double time) {
-            super(0.03, 0.003);
-            this.x = pos.getX();
-            this.y = pos.getY();
-            this.cSpeed = 0.49;
-            this.xSpeed = dir.getX()*cSpeed;
-            this.ySpeed = dir.getY()*cSpeed;
-            this.color = StdDraw.RED;
-            this.damage = shotDamage;
-            this.time = time;
-        }
-
-        public Double getTime() {
-            return time;
-        }
-    }
+    private static final double SPEED = 0.49; // the constant speed of the ion projectiles
 
     protected int maxDeactivationTime; //the maximum amount of time (in s) the ion can deactivate a module or shield
 
@@ -58,12 +36,25 @@ public class IonCannon extends Weapon {
     }
 
     /**
-     * Shots a dummy projectile
-     * @see weapon.Weapon#shot(display.Vector2, display.Vector2)
+     * Shots an ion projectile, which deactivates what it hits.
+     * @see weapon.Weapon#shot(ProjectileStore, display.Vector2, display.Vector2)
      */
     @Override
-    public Projectile shot(Vector2<Double> pos, Vector2<Double> dir) {
-        return new IonProjectile(pos, dir, (double)this.deactivationTime);
+    public int shot(ProjectileStore projectiles, Vector2<Double> pos, Vector2<Double> dir) {
+        return projectiles.add(ProjectileStore.ION, pos.getX(), pos.getY(),
+                dir.getX()*SPEED, dir.getY()*SPEED, shotDamage, this.deactivationTime);
+    }
+
+    @Override
+    public void save(Snapshot s) {
+        super.save(s);
+        s.putInt(deactivationTime);
+    }
+
+    @Override
+    public void restore(Snapshot s) {
+        super.restore(s);
+        deactivationTime = s.getInt();
     }
 
 
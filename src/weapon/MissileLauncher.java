@@ -1,39 +1,11 @@
 package weapon;
 
-import display.StdDraw;
 import display.Vector2;
+import main.Snapshot;
 
 public class MissileLauncher extends Weapon {
 
-    public class Missile extends Projectile {
-
-        /**
-         * Creates a Missile of the provided dimensions.
-         *
-         * @param pos of the projectile
-         * @param dir of the missile once shot
-         */
-        protected Missile(Vector2<Double> pos, Vector2<Double> dir) {
-            super(0.02, 0.015);
-            this.x = pos.getX();
-            this.y = pos.getY();
-            this.cSpeed = 0.15;
-            this.xSpeed = dir.getX()*cSpeed;
-            this.ySpeed = dir.getY()*cSpeed;
-            this.color = StdDraw.MAGENTA;
-            this.damage = shotDamage;
-        }
-
-        /**
-         * Draws the missile.
-         */
-        @Override
-        public void draw() {
-            StdDraw.setPenColor(color);
-            StdDraw.filledEllipse(x, y, width/2, height/2);
-            StdDraw.setPenColor(StdDraw.BLACK);
-        }
-    }
+    private static final double SPEED = 0.15; //the constant speed of the missiles
 
     protected int maxCapacity; //the maximum number of missiles that can be stocked
     protected int missilesLeft; // the amount of missiles left to shoot.
@@ -51,13 +23,30 @@ public class MissileLauncher extends Weapon {
         return missilesLeft;
     }
 
+    /**
+     * Shots a missile if there are some left. Missiles go through shields.
+     * @see weapon.Weapon#shot(ProjectileStore, display.Vector2, display.Vector2)
+     */
     @Override
-    public Projectile shot(Vector2<Double> pos, Vector2<Double> dir) {
+    public int shot(ProjectileStore projectiles, Vector2<Double> pos, Vector2<Double> dir) {
         if(missilesLeft > 0) {
             missilesLeft--;
-            return new Missile(pos, dir);
-        } else return null;
+            return projectiles.add(ProjectileStore.MISSILE, pos.getX(), pos.getY(),
+                    dir.getX()*SPEED, dir.getY()*SPEED, shotDamage, 0);
+        } else return -1;
     }
 
     public void addMissile() {missilesLeft++;}
+
+    @Override
+    public void save(Snapshot s) {
+        super.save(s);
+        s.putInt(missilesLeft);
+    }
+
+    @Override
+    public void restore(Snapshot s) {
+        super.restore(s);
+        missilesLeft = s.getInt();
+    }
 }
@@ -0,0 +1,334 @@
+package weapon;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import display.StdDraw;
+import main.Snapshot;
+
+/**
+ * The projectile store holds all the projectiles shot by a ship.
+ * A projectile is shot by a weapon at a position and follows the
+ * direction provided at a constant speed.
+ *
+ * A projectile is not an object but a slot in parallel arrays of
+ * primitives, so shooting and moving projectiles does not allocate
+ * once the store has grown to the size of the fight.
+ *
+ * Removing a projectile only marks its slot, so the projectiles can be
+ * removed while they are scanned. The store is then compacted once,
+ * which packs the remaining projectiles in the order they were shot.
+ */
+public class ProjectileStore {
+
+	// Types of projectile
+	public static final int DUMMY	= 0;
+	public static final int ION		= 1;
+	public static final int LASER	= 2;
+	public static final int MISSILE	= 3;
+	public static final int SHOTGUN	= 4;
+
+	// Dimensions of each type of projectile
+	private static final double[] WIDTH		= { 0.01, 0.03, 0.005, 0.02, 0.03 };
+	private static final double[] HEIGHT	= { 0.01, 0.003, 0, 0.015, 0.03 };
+
+	private double[]	x;			// The X positions
+	private double[]	y;			// The Y positions
+	private double[]	prevX;		// The X positions before the last step
+	private double[]	prevY;		// The Y positions before the last step
+	private double[]	startX;		// The X positions where the projectiles were shot
+	private double[]	startY;		// The Y positions where the projectiles were shot
+	private double[]	xSpeed;		// The x speeds
+	private double[]	ySpeed;		// The y speeds
+	private double[]	ionTime;	// The time for which an ion deactivates something
+	private int[]		type;		// The types
+	private int[]		damage;		// The amount of damage the projectiles do
+	private boolean[]	alive;		// Whether a slot holds a projectile
+	private int			top;		// The slot after the last one used
+	private int			size;		// The amount of projectiles
+
+	/**
+	 * Creates an empty store.
+	 */
+	public ProjectileStore() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty store with room for the given amount of projectiles.
+	 * @param capacity the initial capacity
+	 */
+	public ProjectileStore(int capacity) {
+		x = new double[capacity];
+		y = new double[capacity];
+		prevX = new double[capacity];
+		prevY = new double[capacity];
+		startX = new double[capacity];
+		startY = new double[capacity];
+		xSpeed = new double[capacity];
+		ySpeed = new double[capacity];
+		ionTime = new double[capacity];
+		type = new int[capacity];
+		damage = new int[capacity];
+		alive = new boolean[capacity];
+	}
+
+	/**
+	 * Adds a projectile to the store.
+	 * @param type the type of the projectile
+	 * @param x X position
+	 * @param y Y position
+	 * @param xSpeed x speed
+	 * @param ySpeed y speed
+	 * @param damage the amount of damage it does
+	 * @param ionTime the time for which it deactivates something, 0 if it is not an ion
+	 * @return the slot of the projectile
+	 */
+	public int add(int type, double x, double y, double xSpeed, double ySpeed, int damage, double ionTime) {
+		if (top == this.x.length)
+			grow();
+		int i = top++;
+		this.type[i] = type;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.prevX[i] = x;
+		this.prevY[i] = y;
+		this.startX[i] = x;
+		this.startY[i] = y;
+		this.xSpeed[i] = xSpeed;
+		this.ySpeed[i] = ySpeed;
+		this.damage[i] = damage;
+		this.ionTime[i] = ionTime;
+		this.alive[i] = true;
+		size++;
+		return i;
+	}
+
+	/**
+	 * Doubles the capacity of the store.
+	 */
+	private void grow() {
+		int capacity = Math.max(1, x.length * 2);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		prevX = Arrays.copyOf(prevX, capacity);
+		prevY = Arrays.copyOf(prevY, capacity);
+		startX = Arrays.copyOf(startX, capacity);
+		startY = Arrays.copyOf(startY, capacity);
+		xSpeed = Arrays.copyOf(xSpeed, capacity);
+		ySpeed = Arrays.copyOf(ySpeed, capacity);
+		ionTime = Arrays.copyOf(ionTime, capacity);
+		type = Arrays.copyOf(type, capacity);
+		damage = Arrays.copyOf(damage, capacity);
+		alive = Arrays.copyOf(alive, capacity);
+	}
+
+	/**
+	 * Removes a projectile from the store. Its slot is only freed
+	 * by the next compaction, the other slots are left as they are.
+	 * @param i the slot of the projectile
+	 */
+	public void remove(int i) {
+		if (!alive[i])
+			return;
+		alive[i] = false;
+		xSpeed[i] = 0;
+		ySpeed[i] = 0;
+		size--;
+	}
+
+	/**
+	 * Packs the remaining projectiles at the start of the store,
+	 * in the order they were shot, and frees the slots of the
+	 * removed ones. The slots of the projectiles change.
+	 */
+	public void compact() {
+		if (size == top)
+			return;
+		int j = 0;
+		for (int i = 0; i < top; i++) {
+			if (!alive[i])
+				continue;
+			if (i != j) {
+				x[j] = x[i];
+				y[j] = y[i];
+				prevX[j] = prevX[i];
+				prevY[j] = prevY[i];
+				startX[j] = startX[i];
+				startY[j] = startY[i];
+				xSpeed[j] = xSpeed[i];
+				ySpeed[j] = ySpeed[i];
+				ionTime[j] = ionTime[i];
+				type[j] = type[i];
+				damage[j] = damage[i];
+				alive[j] = true;
+				alive[i] = false;
+			}
+			j++;
+		}
+		top = j;
+	}
+
+	/**
+	 * Removes all the projectiles.
+	 */
+	public void clear() {
+		Arrays.fill(alive, 0, top, false);
+		top = 0;
+		size = 0;
+	}
+
+	/**
+	 * Writes the projectiles in the snapshot.
+	 * @param s the snapshot to write in
+	 */
+	public void save(Snapshot s) {
+		s.putInt(top);
+		s.putInt(size);
+		for (int i = 0; i < top; i++) {
+			s.putDouble(x[i]);
+			s.putDouble(y[i]);
+			s.putDouble(prevX[i]);
+			s.putDouble(prevY[i]);
+			s.putDouble(startX[i]);
+			s.putDouble(startY[i]);
+			s.putDouble(xSpeed[i]);
+			s.putDouble(ySpeed[i]);
+			s.putDouble(ionTime[i]);
+			s.putInt(type[i]);
+			s.putInt(damage[i]);
+			s.putBoolean(alive[i]);
+		}
+	}
+
+	/**
+	 * Reads the projectiles from the snapshot, replacing the ones in the store.
+	 * @param s the snapshot to read from
+	 */
+	public void restore(Snapshot s) {
+		clear();
+		int n = s.getInt();
+		while (x.length < n)
+			grow();
+		top = n;
+		size = s.getInt();
+		for (int i = 0; i < top; i++) {
+			x[i] = s.getDouble();
+			y[i] = s.getDouble();
+			prevX[i] = s.getDouble();
+			prevY[i] = s.getDouble();
+			startX[i] = s.getDouble();
+			startY[i] = s.getDouble();
+			xSpeed[i] = s.getDouble();
+			ySpeed[i] = s.getDouble();
+			ionTime[i] = s.getDouble();
+			type[i] = s.getInt();
+			damage[i] = s.getInt();
+			alive[i] = s.getBoolean();
+		}
+	}
+
+	/**
+	 * Moves all the projectiles by the time provided.
+	 * The speed of a removed projectile is zero, so every slot can be moved
+	 * in one loop without checking it.
+	 * @param time elapsed time
+	 */
+	public void step(double time) {
+		for (int i = 0; i < top; i++) {
+			prevX[i] = x[i];
+			prevY[i] = y[i];
+			x[i] += xSpeed[i]*time;
+			y[i] += ySpeed[i]*time;
+		}
+	}
+
+	/**
+	 * Draws the projectiles between their previous and current position.
+	 * @param alpha how far between the two positions to draw them, from 0 to 1
+	 */
+	public void draw(double alpha) {
+		for (int i = 0; i < top; i++) {
+			if (!alive[i])
+				continue;
+			double px = prevX[i] + (x[i] - prevX[i])*alpha;
+			double py = prevY[i] + (y[i] - prevY[i])*alpha;
+			int t = type[i];
+			StdDraw.setPenColor(getColor(t));
+			switch (t) {
+				case LASER:
+					StdDraw.setPenRadius(WIDTH[t]);
+					StdDraw.line(startX[i], startY[i], px, py);
+					StdDraw.setPenRadius();
+					break;
+				case MISSILE:
+					StdDraw.filledEllipse(px, py, WIDTH[t]/2, HEIGHT[t]/2);
+					break;
+				default:
+					StdDraw.filledRectangle(px, py, WIDTH[t]/2, HEIGHT[t]/2);
+					break;
+			}
+		}
+		StdDraw.setPenColor(StdDraw.BLACK);
+	}
+
+	/**
+	 * Gives the color of a type of projectile.
+	 * It is only called when drawing so that projectiles can be
+	 * shot without loading the drawing library.
+	 * @param type the type of projectile
+	 * @return the color
+	 */
+	private static Color getColor(int type) {
+		switch (type) {
+			case ION:		return StdDraw.RED;
+			case LASER:		return StdDraw.CYAN;
+			case MISSILE:	return StdDraw.MAGENTA;
+			default:		return StdDraw.LIGHT_GRAY;
+		}
+	}
+
+	/**
+	 * Checks whether the projectile is out of the screen.
+	 * @param i the slot of the projectile
+	 * @return whether the projectile is out of the screen
+	 */
+	public boolean isOutOfScreen(int i) {
+		return x[i] > 1 || y[i] > 1 || x[i] < 0 || y[i] < 0;
+	}
+
+	/**
+	 * Checks whether the projectile is out of a provided rectangle.
+	 * @param i the slot of the projectile
+	 * @param xCenter X center of the rectangle
+	 * @param yCenter Y center of the rectangle
+	 * @param halfWidth half of the width of the rectangle
+	 * @param halfHeight half of the height of the rectangle
+	 * @return whether the projectile is out of the rectangle
+	 */
+	public boolean isOutOfRectangle(int i, double xCenter, double yCenter, double halfWidth, double halfHeight) {
+		return x[i] < xCenter-halfWidth || x[i] > xCenter+halfWidth || y[i] < yCenter-halfHeight || y[i] > yCenter+halfHeight;
+	}
+
+	/**
+	 * Gives the slot after the last one which may hold a projectile.
+	 * Right after a compaction, it is the amount of projectiles.
+	 * @return the upper bound of the slots
+	 */
+	public int top()				{ return top;			}
+
+	/**
+	 * Gives the amount of projectiles in the store.
+	 * @return the amount of projectiles
+	 */
+	public int size()				{ return size;			}
+
+	public boolean	isAlive(int i)	{ return alive[i];		}
+	public int		getType(int i)	{ return type[i];		}
+	public double	getX(int i)		{ return x[i];			}
+	public double	getY(int i)		{ return y[i];			}
+	public double	getPrevX(int i)	{ return prevX[i];		}
+	public double	getPrevY(int i)	{ return prevY[i];		}
+	public int		getDamage(int i){ return damage[i];		}
+	public double	getIonTime(int i){ return ionTime[i];	}
+}
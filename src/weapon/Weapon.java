@@ -1,6 +1,7 @@
 package weapon;
 
 import display.Vector2;
+import main.Snapshot;
 
 /**
  * A weapon goes into a WeaponControl to be activated and
@@ -10,6 +11,11 @@ import display.Vector2;
  */
 public abstract class Weapon {
 
+	// The types of weapons, by their code in the snapshots
+	private static final Class<?>[] TYPES = {
+		DummyGun.class, LaserGun.class, IonCannon.class, Shotgun.class, MissileLauncher.class
+	};
+
 	protected String		name;
 	protected int 			requiredPower;
 	protected int 			chargeTime;
@@ -19,13 +25,14 @@ public abstract class Weapon {
 	protected double		currentCharge;
 	
 	/**
-	 * Creates a projectile at given position and aiming at the
-	 * provided direction.
+	 * Adds a projectile to the store at given position and aiming
+	 * at the provided direction.
+	 * @param projectiles the store of the projectiles of the ship
 	 * @param pos position of the projectile when shot
 	 * @param dir direction of the projectile
-	 * @return the created projectile
+	 * @return the slot of the projectile in the store, or -1 if none was shot
 	 */
-	public abstract Projectile shot(Vector2<Double> pos, Vector2<Double> dir);
+	public abstract int shot(ProjectileStore projectiles, Vector2<Double> pos, Vector2<Double> dir);
 
 	/**
 	 * Activates the weapon.
@@ -110,6 +117,54 @@ public abstract class Weapon {
 		return currentCharge >= chargeTime;
 	}
 
+	/**
+	 * Gives the code of the type of a weapon in the snapshots.
+	 * @param w the weapon
+	 * @return the code of its type
+	 */
+	public static int typeOf(Weapon w) {
+		for (int i = 0; i < TYPES.length; i++)
+			if (TYPES[i] == w.getClass())
+				return i;
+		throw new IllegalArgumentException("Unknown weapon " + w.getClass().getName());
+	}
+
+	/**
+	 * Creates a new weapon of a type given by typeOf.
+	 * @param type the code of the type
+	 * @return the weapon
+	 */
+	public static Weapon create(int type) {
+		switch (type) {
+			case 0:		return new DummyGun();
+			case 1:		return new LaserGun();
+			case 2:		return new IonCannon();
+			case 3:		return new Shotgun();
+			case 4:		return new MissileLauncher();
+			default:	throw new IllegalArgumentException("Unknown weapon type " + type);
+		}
+	}
+
+	/**
+	 * Writes the state of the weapon in the snapshot.
+	 * @param s the snapshot to write in
+	 */
+	public void save(Snapshot s) {
+		s.putBoolean(activated);
+		s.putDouble(currentCharge);
+		s.putInt(shotDamage);
+	}
+
+	/**
+	 * Reads the state of the weapon from the snapshot.
+	 * @param s the snapshot to read from
+	 */
+	public void restore(Snapshot s) {
+		activated = s.getBoolean();
+		currentCharge = s.getDouble();
+		shotDamage = s.getInt();
+	}
+
 	public void setShotDamage(int shotDamage) {
 		this.shotDamage = shotDamage;
 	}